@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.addresstracker.addressobserver;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+
+/**
+ * AddressObservationFilter lets through the first observation of an address
+ * (mac, ip) on a node-connector within a period and drops the repeated ones,
+ * so that observers of data packets pass only a fraction of them on to the
+ * {@link AddressObservationWriter}.
+ *
+ * <p>
+ * It is a Bloom filter split in two generations: observations are looked up in
+ * both and recorded in the current one, which becomes the previous one after a
+ * period. An address observed continuously is therefore let through about once
+ * every one to two periods. Being probabilistic, it may also drop the first
+ * observation of an address, which is then let through in a later period.
+ */
+public final class AddressObservationFilter {
+    private static final int HASH_FUNCTIONS = 3;
+
+    private final int bits;
+    private final long period;
+    private volatile Generations generations;
+
+    /**
+     * Construct an AddressObservationFilter.
+     *
+     * @param bits
+     *            The size of each generation, rounded up to a multiple of 64.
+     * @param period
+     *            Time in milliseconds after which the current generation becomes the previous one.
+     */
+    public AddressObservationFilter(int bits, long period) {
+        this.bits = Math.max(Long.SIZE, (bits + Long.SIZE - 1) / Long.SIZE * Long.SIZE);
+        this.period = period;
+        generations = new Generations(newGeneration(), newGeneration(), System.currentTimeMillis());
+    }
+
+    /**
+     * Checks whether an observation is to be let through.
+     *
+     * @return true if the observation has not been made recently.
+     */
+    public boolean isNew(MacAddress macAddress, IpAddress ipAddress, NodeConnectorRef nodeConnectorRef) {
+        final Generations current = currentGenerations(System.currentTimeMillis());
+
+        final long hash = mix(31L * (31L * nodeConnectorRef.hashCode() + macAddress.hashCode()) + ipAddress.hashCode());
+        final int hash1 = (int) hash;
+        final int hash2 = (int) (hash >>> 32);
+        boolean seen = true;
+        for (int i = 1; i <= HASH_FUNCTIONS; i++) {
+            final int bit = Math.floorMod(hash1 + i * hash2, bits);
+            final int word = bit / Long.SIZE;
+            final long mask = 1L << (bit % Long.SIZE);
+            if ((current.previous.get(word) & mask) == 0
+                    && (current.current.getAndUpdate(word, value -> value | mask) & mask) == 0) {
+                seen = false;
+            }
+        }
+        return !seen;
+    }
+
+    private Generations currentGenerations(long now) {
+        final Generations current = generations;
+        if (now - current.started < period) {
+            return current;
+        }
+        synchronized (this) {
+            if (generations == current) {
+                generations = new Generations(newGeneration(), current.current, now);
+            }
+            return generations;
+        }
+    }
+
+    private AtomicLongArray newGeneration() {
+        return new AtomicLongArray(bits / Long.SIZE);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading the bits of a weak hash code.
+     */
+    private static long mix(long hash) {
+        long mixed = hash;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xff51afd7ed558ccdL;
+        mixed ^= mixed >>> 33;
+        mixed *= 0xc4ceb9fe1a85ec53L;
+        mixed ^= mixed >>> 33;
+        return mixed;
+    }
+
+    private record Generations(AtomicLongArray current, AtomicLongArray previous, long started) {
+    }
+}
@@ -11,28 +11,58 @@ import com.google.common.util.concurrent.FluentFuture;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.MoreExecutors;
-import java.util.Date;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.eclipse.jdt.annotation.Nullable;
+import org.opendaylight.l2switch.addresstracker.addressobserver.AddressTrackerStatistics.Protocol;
 import org.opendaylight.mdsal.binding.api.DataBroker;
+import org.opendaylight.mdsal.binding.api.DataObjectModification;
+import org.opendaylight.mdsal.binding.api.DataObjectModification.ModificationType;
+import org.opendaylight.mdsal.binding.api.DataTreeChangeListener;
+import org.opendaylight.mdsal.binding.api.DataTreeModification;
+import org.opendaylight.mdsal.binding.api.NotificationPublishService;
 import org.opendaylight.mdsal.binding.api.ReadTransaction;
+import org.opendaylight.mdsal.binding.api.TransactionChain;
 import org.opendaylight.mdsal.binding.api.WriteTransaction;
 import org.opendaylight.mdsal.common.api.CommitInfo;
 import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
-import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressMoved;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressMovedBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressObservationStatistics;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+import org.opendaylight.yangtools.binding.DataObjectReference;
+import org.opendaylight.yangtools.concepts.Registration;
+import org.opendaylight.yangtools.yang.common.Empty;
 import org.opendaylight.yangtools.yang.common.Uint64;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,18 +70,104 @@ import org.slf4j.LoggerFactory;
 /**
  * AddressObservationWriter manages the MD-SAL data tree for address
  * observations (mac, ip) on each node-connector.
+ *
+ * <p>
+ * The address observations of a node-connector are read from the data tree
+ * once, when the first observation is made on it. The writer then keeps its
+ * own index of them, which drops repeated observations without touching the
+ * data tree and tells which key an observation is to be written under. The
+ * index follows deletions from the data tree.
+ *
+ * <p>
+ * Observations are queued per node-connector, where a later observation of
+ * the same address replaces an earlier one, and written by a single thread on
+ * a transaction chain. Callers never wait for the data tree. The observations
+ * queued on all node-connectors are written together, in transactions of up
+ * to a configured number of addresses, optionally after letting them collect
+ * for a configured delay.
+ *
+ * <p>
+ * Addresses which have not been observed for a configured maximum age are
+ * removed, as are the least recently seen addresses of node-connectors which
+ * would otherwise hold more than a configured number of them. For aging, all
+ * node-connectors in the data tree are indexed when the writer starts and
+ * after the transaction chain has failed, not only those observed since.
+ *
+ * <p>
+ * The index of a node-connector is dropped once it is removed from the data
+ * tree. Observations in a transaction which failed, for instance because its
+ * node-connector was removed meanwhile, are queued again once, so that they
+ * are not lost along with it.
+ *
+ * <p>
+ * If enabled, the writer also knows which node-connector of each node a MAC
+ * address has last been observed on. Once a MAC address is observed on another
+ * node-connector of the same node, its addresses on the former one are removed
+ * and an {@link AddressMoved} notification is published, so that forwarding
+ * follows a migrated host right away.
+ *
+ * <p>
+ * The index can be saved to a snapshot file periodically. The addresses found
+ * in it when the writer starts are written back to their node-connectors as
+ * soon as these are observed again, so that hosts which were known before a
+ * restart of the controller do not have to be learned again.
+ *
+ * <p>
+ * What the writer does is counted in its {@link AddressTrackerStatistics},
+ * which can also be written to the operational data tree periodically.
  */
-public class AddressObservationWriter {
+public class AddressObservationWriter implements DataTreeChangeListener<Addresses>, AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(AddressObservationWriter.class);
+    private static final long MIN_AGING_PERIOD = 1000;
+    private static final DataObjectIdentifier<AddressObservationStatistics> STATISTICS_PATH =
+        DataObjectIdentifier.builder(AddressObservationStatistics.class).build();
+    private static final DataObjectIdentifier<Nodes> NODES_PATH = DataObjectIdentifier.builder(Nodes.class).build();
+
+    private record ObservedAddress(MacAddress mac, IpAddress ip) {
+    }
 
-    private static final class NodeConnectorLock {
+    private record Observation(Uint64 key, long firstSeen, long lastSeen) {
+    }
+
+    private record AgingEntry(NodeConnectorRef nodeConnectorRef, ObservedAddress address) {
+    }
+
+    private record MacOnNode(DataObjectIdentifier<Node> node, MacAddress mac) {
+    }
+
+    private record MacLocation(NodeConnectorRef nodeConnectorRef, long lastSeen) {
     }
 
     private final AtomicLong addressKey = new AtomicLong(0);
     private long timestampUpdateInterval;
+    private long batchDelay;
+    private int batchSize = 256;
+    private long maxAge;
+    private int maxAddressesPerPort;
+    private boolean detectAddressMoves;
     private final DataBroker dataService;
-    private final Map<NodeConnectorRef, NodeConnectorLock> lockMap = new ConcurrentHashMap<>();
-    private final Map<NodeConnectorLock, FluentFuture<? extends CommitInfo>> futureMap = new ConcurrentHashMap<>();
+    private final @Nullable NotificationPublishService notificationPublishService;
+    private final AtomicReference<TransactionChain> transactionChain = new AtomicReference<>();
+    private final Map<NodeConnectorRef, Map<ObservedAddress, Observation>> observations = new ConcurrentHashMap<>();
+    // Node connector -> address -> last seen, waiting to be written
+    private final Map<NodeConnectorRef, Map<ObservedAddress, Long>> pendingObservations = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService writeExecutor = Executors.newScheduledThreadPool(1);
+    // Last seen -> addresses indexed with that last seen, only used by the write thread
+    private final NavigableMap<Long, Set<AgingEntry>> agingIndex = new TreeMap<>();
+    // Address -> last seen it is indexed with, so that each address is indexed once
+    private final Map<AgingEntry, Long> agingLastSeen = new HashMap<>();
+    // MAC on a node -> node connector it was last seen on
+    private final Map<MacOnNode, MacLocation> macLocations = new ConcurrentHashMap<>();
+    // Node connector -> addresses read from the snapshot, not written back yet
+    private final Map<NodeConnectorRef, long[]> restoredAddresses = new ConcurrentHashMap<>();
+    // Node connector -> address -> last seen, of transactions which failed
+    private final Map<NodeConnectorRef, Map<ObservedAddress, Long>> failedObservations = new ConcurrentHashMap<>();
+    // The chain observations of failed transactions have been queued again for
+    private volatile TransactionChain retryChain;
+    private volatile Path snapshotFile;
+    private final AddressTrackerStatistics statistics = new AddressTrackerStatistics();
 
     /**
      * Construct an AddressTracker with the specified inputs.
@@ -60,13 +176,222 @@ public class AddressObservationWriter {
      *            The DataBrokerService for the AddressTracker
      */
     public AddressObservationWriter(DataBroker dataService) {
+        this(dataService, null);
+    }
+
+    /**
+     * Construct an AddressTracker with the specified inputs.
+     *
+     * @param dataService
+     *            The DataBrokerService for the AddressTracker
+     * @param notificationPublishService
+     *            The NotificationPublishService address moves are published to, if any
+     */
+    public AddressObservationWriter(DataBroker dataService,
+            @Nullable NotificationPublishService notificationPublishService) {
         this.dataService = dataService;
+        this.notificationPublishService = notificationPublishService;
+        transactionChain.set(newTransactionChain());
     }
 
     public void setTimestampUpdateInterval(long timestampUpdateInterval) {
         this.timestampUpdateInterval = timestampUpdateInterval;
     }
 
+    /**
+     * Sets for how long observations are collected before being written.
+     *
+     * @param batchDelay
+     *            Time in milliseconds, 0 writes observations as soon as possible.
+     */
+    public void setBatchDelay(long batchDelay) {
+        this.batchDelay = batchDelay;
+    }
+
+    /**
+     * Sets how many address observations are written in one transaction at
+     * most. Collecting this many observations ends the batch delay early.
+     *
+     * @param batchSize
+     *            The maximum number of addresses written per transaction.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets after how long without being observed an address is removed from
+     * the data tree, and starts looking for such addresses.
+     *
+     * @param maxAge
+     *            Time in milliseconds, 0 never removes addresses.
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+        if (maxAge > 0) {
+            writeExecutor.execute(this::indexInventory);
+            final long period = Math.max(maxAge / 10, MIN_AGING_PERIOD);
+            writeExecutor.scheduleWithFixedDelay(this::removeStaleObservations, period, period,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sets how many addresses are kept on a node connector at most. Once a
+     * new address would exceed it, the least recently seen one is removed.
+     *
+     * @param maxAddressesPerPort
+     *            The maximum number of addresses per node connector, 0 for no limit.
+     */
+    public void setMaxAddressesPerPort(int maxAddressesPerPort) {
+        this.maxAddressesPerPort = maxAddressesPerPort;
+    }
+
+    /**
+     * Sets whether a MAC address observed on another node connector of a node
+     * is removed from the former one, and its move published.
+     *
+     * @param detectAddressMoves
+     *            true to detect address moves.
+     */
+    public void setDetectAddressMoves(boolean detectAddressMoves) {
+        this.detectAddressMoves = detectAddressMoves;
+    }
+
+    /**
+     * Restores the addresses saved in a snapshot file, and starts saving the
+     * known addresses to it periodically and when the writer is closed. The
+     * restored addresses are written back once their node connector exists.
+     *
+     * @param file
+     *            The snapshot file.
+     * @param period
+     *            Time in milliseconds between two snapshots.
+     */
+    public void setSnapshot(Path file, long period) {
+        try {
+            restoredAddresses.putAll(AddressSnapshot.read(file));
+            LOG.info("Restored addresses of {} node connectors from {}", restoredAddresses.size(), file);
+        } catch (IOException e) {
+            LOG.warn("Failed to restore addresses from {}, starting without them", file, e);
+        }
+        snapshotFile = file;
+        if (!restoredAddresses.isEmpty()) {
+            final List<NodeConnectorRef> restored = List.copyOf(restoredAddresses.keySet());
+            writeExecutor.execute(() -> writeRestoredObservations(restored));
+        }
+        writeExecutor.scheduleWithFixedDelay(this::writeSnapshot, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts writing the statistics to the operational data tree periodically.
+     *
+     * @param period
+     *            Time in milliseconds between two writes.
+     */
+    public void setStatisticsInterval(long period) {
+        writeExecutor.scheduleWithFixedDelay(this::writeStatistics, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public AddressTrackerStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Counts an address observed by an observer, before it is filtered or
+     * added.
+     *
+     * @param protocol
+     *            The protocol of the packet the address was observed in.
+     */
+    public void observationReceived(Protocol protocol) {
+        statistics.observationReceived(protocol);
+    }
+
+    /**
+     * Counts an address observation which an observer has dropped as recent.
+     */
+    public void observationSuppressed() {
+        statistics.observationSuppressed();
+    }
+
+    public Registration registerAsDataChangeListener() {
+        return dataService.registerLegacyTreeChangeListener(LogicalDatastoreType.OPERATIONAL,
+            DataObjectReference.builder(Nodes.class)
+                .child(Node.class)
+                .child(NodeConnector.class)
+                .augmentation(AddressCapableNodeConnector.class)
+                .child(Addresses.class)
+                .build(), this);
+    }
+
+    /**
+     * Registers for node connectors, whose restored addresses are written
+     * back once they are added, and whose index is dropped once they are
+     * removed.
+     *
+     * @return The registration of the listener.
+     */
+    public Registration registerAsNodeConnectorListener() {
+        return dataService.registerLegacyTreeChangeListener(LogicalDatastoreType.OPERATIONAL,
+            DataObjectReference.builder(Nodes.class)
+                .child(Node.class)
+                .child(NodeConnector.class)
+                .build(), this::onNodeConnectorsChanged);
+    }
+
+    @Override
+    public void onDataTreeChanged(List<DataTreeModification<Addresses>> changes) {
+        for (DataTreeModification<Addresses> change : changes) {
+            final DataObjectModification<Addresses> rootNode = change.getRootNode();
+            final Addresses removed = rootNode.dataBefore();
+            if (rootNode.modificationType() == ModificationType.DELETE && removed != null) {
+                final var nodeConnectorRef = new NodeConnectorRef(change.path().trimTo(NodeConnector.class));
+                final var portObservations = observations.get(nodeConnectorRef);
+                if (portObservations != null) {
+                    portObservations.computeIfPresent(new ObservedAddress(removed.getMac(), removed.getIp()),
+                        (address, observation) -> observation.key.equals(removed.getId()) ? null : observation);
+                    forgetLocation(nodeConnectorRef, portObservations, removed.getMac());
+                }
+            }
+        }
+    }
+
+    private void onNodeConnectorsChanged(List<DataTreeModification<NodeConnector>> changes) {
+        final List<NodeConnectorRef> restored = new ArrayList<>();
+        for (DataTreeModification<NodeConnector> change : changes) {
+            final NodeConnectorRef nodeConnectorRef = new NodeConnectorRef(change.path());
+            final ModificationType modificationType = change.getRootNode().modificationType();
+            if (modificationType == ModificationType.DELETE) {
+                forgetNodeConnector(nodeConnectorRef);
+            } else if (modificationType == ModificationType.WRITE && restoredAddresses.containsKey(nodeConnectorRef)) {
+                restored.add(nodeConnectorRef);
+            }
+        }
+        if (!restored.isEmpty()) {
+            try {
+                writeExecutor.execute(() -> writeRestoredObservations(restored));
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Closed, not restoring addresses on {} node connectors", restored.size(), e);
+            }
+        }
+    }
+
+    /**
+     * Drops the index and the pending observations of a removed node
+     * connector. Observations made on it later are not written, as it is not
+     * found when it is read.
+     */
+    private void forgetNodeConnector(NodeConnectorRef nodeConnectorRef) {
+        observations.remove(nodeConnectorRef);
+        failedObservations.remove(nodeConnectorRef);
+        final Map<ObservedAddress, Long> pending = pendingObservations.remove(nodeConnectorRef);
+        if (pending != null) {
+            pendingCount.addAndGet(-pending.size());
+        }
+        macLocations.values().removeIf(location -> location.nodeConnectorRef.equals(nodeConnectorRef));
+    }
+
     /**
      * Add addresses into the MD-SAL data tree.
      *
@@ -82,104 +407,654 @@ public class AddressObservationWriter {
             return;
         }
 
-        // get the lock for given node connector so at a time only one
-        // observation can be made on a node connector
-        NodeConnectorLock nodeConnectorLock = lockMap.computeIfAbsent(nodeConnectorRef, key -> new NodeConnectorLock());
+        // Drop observations written recently without going to the data tree
+        final long now = System.currentTimeMillis();
+        final ObservedAddress observedAddress = new ObservedAddress(macAddress, ipAddress);
+        final Map<ObservedAddress, Observation> portObservations = observations.get(nodeConnectorRef);
+        if (portObservations != null) {
+            final Observation observation = portObservations.get(observedAddress);
+            if (observation != null && now - observation.lastSeen <= timestampUpdateInterval) {
+                statistics.observationSuppressed();
+                return;
+            }
+        }
+
+        queueObservation(nodeConnectorRef, observedAddress, now);
+    }
+
+    private void queueObservation(NodeConnectorRef nodeConnectorRef, ObservedAddress observedAddress,
+            long lastSeen) {
+        // The latest observation of an address on a node connector wins
+        pendingObservations.compute(nodeConnectorRef, (ncRef, pending) -> {
+            final Map<ObservedAddress, Long> updated = pending != null ? pending : new HashMap<>();
+            if (updated.putIfAbsent(observedAddress, lastSeen) != null) {
+                updated.merge(observedAddress, lastSeen, Math::max);
+            } else if (pendingCount.incrementAndGet() == batchSize) {
+                // Enough observations for a full transaction, do not wait for the rest of the delay
+                writeExecutor.execute(this::writePendingObservations);
+            }
+            return updated;
+        });
+        if (writeScheduled.compareAndSet(false, true)) {
+            writeExecutor.schedule(this::writePendingObservations, batchDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void close() {
+        writeExecutor.shutdownNow();
+        if (snapshotFile != null) {
+            try {
+                if (writeExecutor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    writeSnapshot();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        final TransactionChain txChain = transactionChain.getAndSet(null);
+        if (txChain != null) {
+            txChain.close();
+        }
+    }
+
+    private void writePendingObservations() {
+        writeScheduled.set(false);
+        final TransactionChain txChain = transactionChain.get();
+        if (txChain == null) {
+            return;
+        }
+
+        // Take what is pending on all node connectors, and write it together
+        final Map<NodeConnectorRef, Map<ObservedAddress, Long>> batch = new HashMap<>();
+        for (NodeConnectorRef nodeConnectorRef : pendingObservations.keySet()) {
+            final Map<ObservedAddress, Long> pending = pendingObservations.remove(nodeConnectorRef);
+            if (pending != null) {
+                pendingCount.addAndGet(-pending.size());
+                batch.put(nodeConnectorRef, pending);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            final WriteBatch writeBatch = new WriteBatch(txChain);
+            readObservations(txChain, batch.keySet());
+            writeObservations(writeBatch, batch);
+            writeBatch.commit();
+        } catch (IllegalStateException e) {
+            // The chain has failed and is being replaced, the observations will be made again
+            LOG.debug("Dropping address observations on {} node connectors", batch.size(), e);
+            statistics.addressChangesFailed(batch.values().stream().mapToInt(Map::size).sum());
+        }
+    }
+
+    private void writeObservations(WriteBatch writeBatch, Map<NodeConnectorRef, Map<ObservedAddress, Long>> batch) {
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<NodeConnectorRef, Map<ObservedAddress, Long>> portBatch : batch.entrySet()) {
+            final NodeConnectorRef nodeConnectorRef = portBatch.getKey();
+            final Map<ObservedAddress, Observation> portObservations = observations.get(nodeConnectorRef);
+            if (portObservations == null) {
+                // The node connector does not exist
+                continue;
+            }
+            restoreObservations(writeBatch, nodeConnectorRef, portObservations);
+            for (Map.Entry<ObservedAddress, Long> entry : portBatch.getValue().entrySet()) {
+                final ObservedAddress observedAddress = entry.getKey();
+                final long lastSeen = entry.getValue();
+                if (isMovedAway(nodeConnectorRef, observedAddress.mac, lastSeen)) {
+                    // Observed on another node connector of the node since
+                    continue;
+                }
+                final Observation existing = portObservations.get(observedAddress);
+                final Observation observation;
+                if (existing == null) {
+                    observation = new Observation(Uint64.fromLongBits(addressKey.getAndIncrement()), lastSeen,
+                        lastSeen);
+                } else if (lastSeen - existing.lastSeen <= timestampUpdateInterval) {
+                    // Update interval has not elapsed, do not run update
+                    statistics.observationSuppressed();
+                    continue;
+                } else {
+                    observation = new Observation(existing.key, existing.firstSeen, lastSeen);
+                }
+
+                // Write only the entry of this mac-ip pair, under its existing key if there is one
+                final Addresses address = new AddressesBuilder()
+                    .withKey(new AddressesKey(observation.key))
+                    .setIp(observedAddress.ip)
+                    .setMac(observedAddress.mac)
+                    .setFirstSeen(observation.firstSeen)
+                    .setLastSeen(observation.lastSeen)
+                    .build();
+                // The node connector has to exist, it is not created by this put()
+                writeBatch.put(addressPath(nodeConnectorRef, observation.key), address);
+                writeBatch.observed(nodeConnectorRef, observedAddress, lastSeen);
+                statistics.recordQueueWait(TimeUnit.MILLISECONDS.toMicros(now - lastSeen));
+                portObservations.put(observedAddress, observation);
+                indexLastSeen(nodeConnectorRef, observedAddress, lastSeen);
+                updateLocation(writeBatch, nodeConnectorRef, observedAddress.mac, lastSeen);
+
+                if (existing == null && maxAddressesPerPort > 0 && portObservations.size() > maxAddressesPerPort) {
+                    removeLeastRecentlySeen(writeBatch, nodeConnectorRef, portObservations, observedAddress);
+                }
+            }
+        }
+    }
+
+    private void removeLeastRecentlySeen(WriteBatch writeBatch, NodeConnectorRef nodeConnectorRef,
+            Map<ObservedAddress, Observation> portObservations, ObservedAddress added) {
+        Map.Entry<ObservedAddress, Observation> oldest = null;
+        for (Map.Entry<ObservedAddress, Observation> entry : portObservations.entrySet()) {
+            if (!entry.getKey().equals(added)
+                    && (oldest == null || entry.getValue().lastSeen < oldest.getValue().lastSeen)) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null && portObservations.remove(oldest.getKey(), oldest.getValue())) {
+            LOG.debug("Removing {} from {}, which has more than {} addresses", oldest.getKey(),
+                nodeConnectorRef.getValue(), maxAddressesPerPort);
+            writeBatch.delete(addressPath(nodeConnectorRef, oldest.getValue().key));
+            forgetLocation(nodeConnectorRef, portObservations, oldest.getKey().mac);
+        }
+    }
+
+    private boolean isMovedAway(NodeConnectorRef nodeConnectorRef, MacAddress mac, long lastSeen) {
+        if (!detectAddressMoves) {
+            return false;
+        }
+        final MacLocation location = macLocations.get(new MacOnNode(nodePath(nodeConnectorRef), mac));
+        return location != null && location.lastSeen > lastSeen
+            && !location.nodeConnectorRef.equals(nodeConnectorRef);
+    }
+
+    /**
+     * Records where a MAC address has been observed. If it has been observed
+     * on another node connector of the node before, its addresses there are
+     * removed and the move is published.
+     */
+    private void updateLocation(WriteBatch writeBatch, NodeConnectorRef nodeConnectorRef, MacAddress mac,
+            long lastSeen) {
+        if (!detectAddressMoves) {
+            return;
+        }
+        final MacLocation previous = macLocations.put(new MacOnNode(nodePath(nodeConnectorRef), mac),
+            new MacLocation(nodeConnectorRef, lastSeen));
+        if (previous == null || previous.nodeConnectorRef.equals(nodeConnectorRef)) {
+            return;
+        }
+
+        LOG.debug("{} moved from {} to {}", mac, previous.nodeConnectorRef.getValue(), nodeConnectorRef.getValue());
+        final Map<ObservedAddress, Observation> formerObservations = observations.get(previous.nodeConnectorRef);
+        if (formerObservations != null) {
+            for (Map.Entry<ObservedAddress, Observation> entry : formerObservations.entrySet()) {
+                if (entry.getKey().mac.equals(mac) && formerObservations.remove(entry.getKey(), entry.getValue())) {
+                    writeBatch.delete(addressPath(previous.nodeConnectorRef, entry.getValue().key));
+                }
+            }
+        }
+        if (notificationPublishService != null) {
+            final AddressMoved addressMoved = new AddressMovedBuilder()
+                .setMac(mac)
+                .setFromNodeConnector(previous.nodeConnectorRef)
+                .setToNodeConnector(nodeConnectorRef)
+                .build();
+            if (notificationPublishService.offerNotification(addressMoved) == NotificationPublishService.REJECTED) {
+                LOG.debug("Address move of {} was not published", mac);
+            }
+        }
+    }
+
+    /**
+     * Forgets where a MAC address has been observed once none of its
+     * addresses is left on that node connector.
+     */
+    private void forgetLocation(NodeConnectorRef nodeConnectorRef, Map<ObservedAddress, Observation> portObservations,
+            MacAddress mac) {
+        if (detectAddressMoves && portObservations.keySet().stream().noneMatch(address -> address.mac.equals(mac))) {
+            macLocations.computeIfPresent(new MacOnNode(nodePath(nodeConnectorRef), mac),
+                (macOnNode, location) -> location.nodeConnectorRef.equals(nodeConnectorRef) ? null : location);
+        }
+    }
+
+    /**
+     * Removes the addresses which have not been seen within the maximum age.
+     * Only the stale part of the aging index is visited.
+     */
+    private void removeStaleObservations() {
+        final TransactionChain txChain = transactionChain.get();
+        if (txChain == null) {
+            return;
+        }
 
-        synchronized (nodeConnectorLock) {
-            // Ensure previous transaction finished writing to the db
-            final var future = futureMap.get(nodeConnectorLock);
-            if (future != null) {
-                try {
-                    future.get();
-                } catch (InterruptedException | ExecutionException e) {
-                    LOG.error("Exception while waiting for previous transaction to finish", e);
+        final long cutoff = System.currentTimeMillis() - maxAge;
+        final var stale = agingIndex.headMap(cutoff, true);
+        final WriteBatch writeBatch = new WriteBatch(txChain);
+        try {
+            for (Set<AgingEntry> entries : stale.values()) {
+                for (AgingEntry entry : entries) {
+                    agingLastSeen.remove(entry);
+                    final Map<ObservedAddress, Observation> portObservations =
+                        observations.get(entry.nodeConnectorRef);
+                    if (portObservations == null) {
+                        continue;
+                    }
+                    final Observation observation = portObservations.get(entry.address);
+                    if (observation != null && observation.lastSeen <= cutoff
+                            && portObservations.remove(entry.address, observation)) {
+                        writeBatch.delete(addressPath(entry.nodeConnectorRef, observation.key));
+                        forgetLocation(entry.nodeConnectorRef, portObservations, entry.address.mac);
+                    }
                 }
             }
+            writeBatch.commit();
+        } catch (IllegalStateException e) {
+            // The chain has failed and is being replaced, the node connectors will be read again
+            LOG.debug("Failed to remove stale addresses", e);
+        }
+        stale.clear();
+    }
+
+    /**
+     * Indexes an address with its last seen, moving it from where it was
+     * indexed before if it had been.
+     */
+    private void indexLastSeen(NodeConnectorRef nodeConnectorRef, ObservedAddress address, long lastSeen) {
+        if (maxAge <= 0) {
+            return;
+        }
+        final AgingEntry entry = new AgingEntry(nodeConnectorRef, address);
+        final Long previous = agingLastSeen.put(entry, lastSeen);
+        if (previous != null) {
+            if (previous == lastSeen) {
+                return;
+            }
+            agingIndex.computeIfPresent(previous, (key, entries) -> entries.remove(entry) && entries.isEmpty()
+                ? null : entries);
+        }
+        agingIndex.computeIfAbsent(lastSeen, key -> new HashSet<>()).add(entry);
+    }
+
+    private static DataObjectIdentifier<Node> nodePath(NodeConnectorRef nodeConnectorRef) {
+        return ((DataObjectIdentifier<?>) nodeConnectorRef.getValue()).trimTo(Node.class);
+    }
 
-            // Initialize builders
-            long now = new Date().getTime();
-            final AddressCapableNodeConnectorBuilder acncBuilder = new AddressCapableNodeConnectorBuilder();
-            final AddressesBuilder addressBuilder = new AddressesBuilder().setIp(ipAddress).setMac(macAddress)
-                    .setFirstSeen(now).setLastSeen(now);
+    private static DataObjectIdentifier<Addresses> addressPath(NodeConnectorRef nodeConnectorRef, Uint64 key) {
+        return ((DataObjectIdentifier<NodeConnector>) nodeConnectorRef.getValue()).toBuilder()
+            .augmentation(AddressCapableNodeConnector.class)
+            .child(Addresses.class, new AddressesKey(key))
+            .build();
+    }
 
-            // Read existing address observations from data tree
-            final FluentFuture<Optional<NodeConnector>> readFuture;
-            try (ReadTransaction readTransaction = dataService.newReadOnlyTransaction()) {
-                readFuture = readTransaction.read(LogicalDatastoreType.OPERATIONAL,
-                    (DataObjectIdentifier<NodeConnector>) nodeConnectorRef.getValue());
+    /**
+     * Reads the address observations of the node connectors which are not
+     * indexed yet. The reads are all issued before waiting for any of them.
+     * Node connectors which do not exist are left out of the index.
+     */
+    private void readObservations(TransactionChain txChain, Collection<NodeConnectorRef> nodeConnectorRefs) {
+        final Map<NodeConnectorRef, FluentFuture<Optional<NodeConnector>>> reads = new HashMap<>();
+        for (NodeConnectorRef nodeConnectorRef : nodeConnectorRefs) {
+            if (!observations.containsKey(nodeConnectorRef)) {
+                try (ReadTransaction readTransaction = txChain.newReadOnlyTransaction()) {
+                    reads.put(nodeConnectorRef, readTransaction.read(LogicalDatastoreType.OPERATIONAL,
+                        (DataObjectIdentifier<NodeConnector>) nodeConnectorRef.getValue()));
+                }
             }
+        }
 
+        for (Map.Entry<NodeConnectorRef, FluentFuture<Optional<NodeConnector>>> read : reads.entrySet()) {
             final NodeConnector nc;
             try {
-                final Optional<NodeConnector> dataObjectOptional = readFuture.get();
+                final Optional<NodeConnector> dataObjectOptional = read.getValue().get();
                 if (dataObjectOptional.isEmpty()) {
-                    return;
+                    continue;
                 }
                 nc = dataObjectOptional.orElseThrow();
             } catch (InterruptedException | ExecutionException e) {
-                LOG.error("Error reading node connector {}", nodeConnectorRef.getValue());
-                throw new RuntimeException("Error reading from operational store, node connector : " + nodeConnectorRef,
-                        e);
-            }
-            AddressCapableNodeConnector acnc = nc.augmentation(AddressCapableNodeConnector.class);
-
-            // FIXME: This block is quite inefficient: we have a unique key and yet we end up re-merging the entire
-            //        'addresses' list over and over again -- which is costly due to the HashMap copy below as well as
-            //        the resulting merge() operation. After issuing the read, we should determine the key of the
-            //        matching entry (or allocate a new key) and issue a simple put() on only the key.
-            final Map<AddressesKey, Addresses> addresses;
-            if (acnc != null) {
-                // Address observations exist
-                addresses = new HashMap<>(acnc.nonnullAddresses());
-                // Search for this mac-ip pair in the existing address observations & update last-seen timestamp
-                for (Addresses existing : addresses.values()) {
-                    if (ipAddress.equals(existing.getIp()) && macAddress.equals(existing.getMac())) {
-                        if ((now - existing.getLastSeen() <= timestampUpdateInterval)) {
-                            // Update interval has not elapsed, do not run update
-                            return;
-                        }
-                        addressBuilder.setFirstSeen(existing.getFirstSeen()).withKey(existing.key());
-                        break;
-                    }
+                // The observations are dropped, they will be made again
+                LOG.error("Error reading node connector {}", read.getKey().getValue(), e);
+                continue;
+            }
+            indexNodeConnector(read.getKey(), nc);
+        }
+    }
+
+    /**
+     * Indexes the node connectors of the whole inventory which are not
+     * indexed yet, so that addresses on node connectors which are not
+     * observed any more are aged as well.
+     */
+    private void indexInventory() {
+        final TransactionChain txChain = transactionChain.get();
+        if (txChain == null) {
+            return;
+        }
+        final Optional<Nodes> nodes;
+        try (ReadTransaction readTransaction = txChain.newReadOnlyTransaction()) {
+            nodes = readTransaction.read(LogicalDatastoreType.OPERATIONAL, NODES_PATH).get();
+        } catch (InterruptedException | ExecutionException | IllegalStateException e) {
+            // Node connectors are still indexed once they are observed
+            LOG.warn("Error reading the inventory, only observed node connectors are aged", e);
+            return;
+        }
+        if (nodes.isEmpty()) {
+            return;
+        }
+        int indexed = 0;
+        for (Node node : nodes.orElseThrow().nonnullNode().values()) {
+            for (NodeConnector nc : node.nonnullNodeConnector().values()) {
+                final NodeConnectorRef nodeConnectorRef = new NodeConnectorRef(NODES_PATH.toBuilder()
+                    .child(Node.class, node.key())
+                    .child(NodeConnector.class, nc.key())
+                    .build());
+                if (!observations.containsKey(nodeConnectorRef)) {
+                    indexNodeConnector(nodeConnectorRef, nc);
+                    indexed++;
                 }
-            } else {
-                // Address observations don't exist, so create the list
-                addresses = new HashMap<>();
             }
+        }
+        LOG.debug("Indexed addresses of {} node connectors from the inventory", indexed);
+    }
 
-            if (addressBuilder.key() == null) {
-                addressBuilder.withKey(new AddressesKey(Uint64.fromLongBits(addressKey.getAndIncrement())));
+    private void indexNodeConnector(NodeConnectorRef nodeConnectorRef, NodeConnector nc) {
+        final Map<ObservedAddress, Observation> portObservations = new ConcurrentHashMap<>();
+        final AddressCapableNodeConnector acnc = nc.augmentation(AddressCapableNodeConnector.class);
+        if (acnc != null) {
+            for (Addresses existing : acnc.nonnullAddresses().values()) {
+                if (existing.getMac() != null && existing.getIp() != null) {
+                    final Long firstSeen = existing.getFirstSeen();
+                    final Long lastSeen = existing.getLastSeen();
+                    final ObservedAddress address = new ObservedAddress(existing.getMac(), existing.getIp());
+                    portObservations.put(address, new Observation(existing.getId(),
+                        firstSeen != null ? firstSeen : 0, lastSeen != null ? lastSeen : 0));
+                    indexLastSeen(nodeConnectorRef, address, lastSeen != null ? lastSeen : 0);
+                    seedLocation(nodeConnectorRef, existing.getMac(), lastSeen != null ? lastSeen : 0);
+                }
+                // Keys allocated from now on must not clash with the existing ones
+                addressKey.accumulateAndGet(existing.getId().longValue() + 1, Math::max);
             }
+        }
+        observations.put(nodeConnectorRef, portObservations);
+    }
 
-            // Add as an augmentation
-            final Addresses address = addressBuilder.build();
-            addresses.put(address.key(), address);
-            acncBuilder.setAddresses(addresses);
+    /**
+     * Writes back the restored addresses of node connectors, without waiting
+     * for addresses to be observed on them. Those which do not exist yet are
+     * restored once they are added.
+     */
+    private void writeRestoredObservations(Collection<NodeConnectorRef> nodeConnectorRefs) {
+        final TransactionChain txChain = transactionChain.get();
+        if (txChain == null) {
+            return;
+        }
+        try {
+            final WriteBatch writeBatch = new WriteBatch(txChain);
+            readObservations(txChain, nodeConnectorRefs);
+            for (NodeConnectorRef nodeConnectorRef : nodeConnectorRefs) {
+                final Map<ObservedAddress, Observation> portObservations = observations.get(nodeConnectorRef);
+                if (portObservations != null) {
+                    restoreObservations(writeBatch, nodeConnectorRef, portObservations);
+                }
+            }
+            writeBatch.commit();
+        } catch (IllegalStateException e) {
+            // The chain has failed and is being replaced, what is left is restored along with observations
+            LOG.debug("Failed to restore addresses on {} node connectors", nodeConnectorRefs.size(), e);
+        }
+    }
 
-            // build Instance Id for AddressCapableNodeConnector
-            final var addressCapableNcInstanceId = ((DataObjectIdentifier<NodeConnector>) nodeConnectorRef.getValue())
-                .toBuilder()
-                .augmentation(AddressCapableNodeConnector.class)
-                .build();
-            final WriteTransaction writeTransaction = dataService.newWriteOnlyTransaction();
-            // Update this AddressCapableNodeConnector in the MD-SAL data tree
-            writeTransaction.merge(LogicalDatastoreType.OPERATIONAL, addressCapableNcInstanceId, acncBuilder.build());
+    /**
+     * Writes back the restored addresses of a node connector which are
+     * neither in the data tree, nor stale, nor observed elsewhere since.
+     */
+    private void restoreObservations(WriteBatch writeBatch, NodeConnectorRef nodeConnectorRef,
+            Map<ObservedAddress, Observation> portObservations) {
+        final long[] restored = restoredAddresses.remove(nodeConnectorRef);
+        if (restored == null) {
+            return;
+        }
+        final long cutoff = maxAge > 0 ? System.currentTimeMillis() - maxAge : Long.MIN_VALUE;
+        for (int i = 0; i < restored.length / AddressSnapshot.ADDRESS_LONGS; i++) {
+            final ObservedAddress address = new ObservedAddress(AddressSnapshot.mac(restored, i),
+                AddressSnapshot.ip(restored, i));
+            final long lastSeen = AddressSnapshot.lastSeen(restored, i);
+            if (lastSeen <= cutoff || portObservations.containsKey(address)
+                    || isMovedAway(nodeConnectorRef, address.mac, lastSeen)) {
+                continue;
+            }
+            final Observation observation = new Observation(Uint64.fromLongBits(addressKey.getAndIncrement()),
+                AddressSnapshot.firstSeen(restored, i), lastSeen);
+            writeBatch.put(addressPath(nodeConnectorRef, observation.key), new AddressesBuilder()
+                .withKey(new AddressesKey(observation.key))
+                .setIp(address.ip)
+                .setMac(address.mac)
+                .setFirstSeen(observation.firstSeen)
+                .setLastSeen(observation.lastSeen)
+                .build());
+            portObservations.put(address, observation);
+            indexLastSeen(nodeConnectorRef, address, lastSeen);
+            seedLocation(nodeConnectorRef, address.mac, lastSeen);
+        }
+    }
+
+    /**
+     * Saves the indexed addresses, and the restored ones which have not been
+     * written back yet, to the snapshot file.
+     */
+    private void writeSnapshot() {
+        final Path file = snapshotFile;
+        final Map<NodeConnectorRef, long[]> snapshot = new HashMap<>(restoredAddresses);
+        for (Map.Entry<NodeConnectorRef, Map<ObservedAddress, Observation>> port : observations.entrySet()) {
+            final List<Map.Entry<ObservedAddress, Observation>> entries = List.copyOf(port.getValue().entrySet());
+            final long[] table = new long[entries.size() * AddressSnapshot.ADDRESS_LONGS];
+            for (int i = 0; i < entries.size(); i++) {
+                final ObservedAddress address = entries.get(i).getKey();
+                final Observation observation = entries.get(i).getValue();
+                AddressSnapshot.setAddress(table, i, address.mac, address.ip, observation.firstSeen,
+                    observation.lastSeen);
+            }
+            snapshot.put(port.getKey(), table);
+        }
+        try {
+            AddressSnapshot.write(file, snapshot);
+            LOG.debug("Saved addresses of {} node connectors to {}", snapshot.size(), file);
+        } catch (IOException e) {
+            LOG.warn("Failed to save addresses to {}", file, e);
+        }
+    }
+
+    /**
+     * Records where a MAC address found in the data tree has been observed,
+     * unless it has been observed more recently elsewhere on the node.
+     */
+    private void seedLocation(NodeConnectorRef nodeConnectorRef, MacAddress mac, long lastSeen) {
+        if (!detectAddressMoves) {
+            return;
+        }
+        macLocations.merge(new MacOnNode(nodePath(nodeConnectorRef), mac), new MacLocation(nodeConnectorRef, lastSeen),
+            (current, seeded) -> current.lastSeen >= seeded.lastSeen ? current : seeded);
+    }
+
+    /**
+     * The puts and deletes made by one run of the write thread, committed in
+     * transactions of at most batchSize operations.
+     */
+    private final class WriteBatch {
+        private final TransactionChain txChain;
+        private WriteTransaction writeTransaction;
+        private int operations;
+        // The observations written by the current transaction, queued again if it fails
+        private Map<NodeConnectorRef, Map<ObservedAddress, Long>> observed = new HashMap<>();
+
+        WriteBatch(TransactionChain txChain) {
+            this.txChain = txChain;
+        }
+
+        void put(DataObjectIdentifier<Addresses> path, Addresses address) {
+            transaction().put(LogicalDatastoreType.OPERATIONAL, path, address);
+            operationDone();
+        }
+
+        void delete(DataObjectIdentifier<Addresses> path) {
+            transaction().delete(LogicalDatastoreType.OPERATIONAL, path);
+            operationDone();
+        }
+
+        /**
+         * Remembers that the last put() wrote an observation. Must be called
+         * before any further put() or delete(), which may commit.
+         */
+        void observed(NodeConnectorRef nodeConnectorRef, ObservedAddress address, long lastSeen) {
+            observed.computeIfAbsent(nodeConnectorRef, ncRef -> new HashMap<>()).put(address, lastSeen);
+        }
 
-            final var writeTxResultFuture = writeTransaction.commit();
-            Futures.addCallback(writeTxResultFuture, new FutureCallback<CommitInfo>() {
+        void commit() {
+            if (writeTransaction == null) {
+                return;
+            }
+            final WriteTransaction committed = writeTransaction;
+            final int committedOperations = operations;
+            final Map<NodeConnectorRef, Map<ObservedAddress, Long>> committedObservations = observed;
+            writeTransaction = null;
+            operations = 0;
+            observed = new HashMap<>();
+            final long submitted = System.nanoTime();
+            Futures.addCallback(committed.commit(), new FutureCallback<CommitInfo>() {
                 @Override
                 public void onSuccess(CommitInfo notUsed) {
-                    LOG.debug("AddressObservationWriter write successful for tx :{}", writeTransaction.getIdentifier());
+                    statistics.addressChangesWritten(committedOperations);
+                    statistics.recordCommitLatency(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submitted));
+                    LOG.debug("AddressObservationWriter write of {} address changes successful for tx :{}",
+                        committedOperations, committed.getIdentifier());
                 }
 
                 @Override
                 public void onFailure(Throwable throwable) {
-                    LOG.error("AddressObservationWriter write transaction {} failed", writeTransaction.getIdentifier(),
+                    statistics.addressChangesFailed(committedOperations);
+                    LOG.error("AddressObservationWriter write transaction {} failed", committed.getIdentifier(),
                         throwable.getCause());
+                    commitFailed(txChain, committedObservations);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        private WriteTransaction transaction() {
+            if (writeTransaction == null) {
+                writeTransaction = txChain.newWriteOnlyTransaction();
+            }
+            return writeTransaction;
+        }
+
+        private void operationDone() {
+            if (++operations >= batchSize) {
+                commit();
+            }
+        }
+    }
+
+    /**
+     * Keeps the observations of a failed transaction, so that they are
+     * queued again once its chain has been replaced. Those which fail again
+     * on the chain they have been queued for are dropped.
+     */
+    private void commitFailed(TransactionChain failedChain,
+            Map<NodeConnectorRef, Map<ObservedAddress, Long>> failed) {
+        if (failedChain == retryChain || failed.isEmpty()) {
+            return;
+        }
+        failed.forEach((nodeConnectorRef, addresses) -> failedObservations.merge(nodeConnectorRef, addresses,
+            (current, more) -> {
+                final Map<ObservedAddress, Long> merged = new HashMap<>(current);
+                more.forEach((address, lastSeen) -> merged.merge(address, lastSeen, Math::max));
+                return merged;
+            }));
+        if (transactionChain.get() != failedChain) {
+            // The chain has been replaced already
+            requeueFailedObservations();
+        }
+    }
+
+    private void requeueFailedObservations() {
+        final TransactionChain txChain = transactionChain.get();
+        if (txChain == null) {
+            return;
+        }
+        retryChain = txChain;
+        for (NodeConnectorRef nodeConnectorRef : failedObservations.keySet()) {
+            final Map<ObservedAddress, Long> failed = failedObservations.remove(nodeConnectorRef);
+            if (failed != null) {
+                LOG.debug("Queueing {} failed address observations on {} again", failed.size(),
+                    nodeConnectorRef.getValue());
+                failed.forEach((address, lastSeen) -> queueObservation(nodeConnectorRef, address, lastSeen));
+            }
+        }
+    }
+
+    private void writeStatistics() {
+        final TransactionChain txChain = transactionChain.get();
+        if (txChain == null) {
+            return;
+        }
+        try {
+            final WriteTransaction writeTransaction = txChain.newWriteOnlyTransaction();
+            writeTransaction.put(LogicalDatastoreType.OPERATIONAL, STATISTICS_PATH, statistics.toOperational());
+            Futures.addCallback(writeTransaction.commit(), new FutureCallback<CommitInfo>() {
+                @Override
+                public void onSuccess(CommitInfo notUsed) {
+                    LOG.trace("AddressObservationWriter statistics written");
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    LOG.debug("AddressObservationWriter failed to write statistics", throwable);
                 }
             }, MoreExecutors.directExecutor());
-            futureMap.put(nodeConnectorLock, writeTxResultFuture);
+        } catch (IllegalStateException e) {
+            // The chain has failed and is being replaced, the next period writes them
+            LOG.debug("Failed to write statistics", e);
+        }
+    }
+
+    private TransactionChain newTransactionChain() {
+        final TransactionChain chain = dataService.createTransactionChain();
+        chain.addCallback(new FutureCallback<Empty>() {
+            @Override
+            public void onSuccess(Empty result) {
+                // no-op
+            }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                LOG.warn("AddressObservationWriter transaction chain failed", cause);
+                chainFailure(chain);
+            }
+        });
+        return chain;
+    }
+
+    private void chainFailure(TransactionChain failedChain) {
+        // Whatever was written on the failed chain may be missing, read the node connectors again
+        observations.clear();
+        macLocations.clear();
+        if (transactionChain.get() != failedChain) {
+            return;
+        }
+        try {
+            final TransactionChain nextChain = newTransactionChain();
+            if (!transactionChain.compareAndSet(failedChain, nextChain)) {
+                // Closed in the meantime
+                nextChain.close();
+                failedChain.close();
+                return;
+            }
+            failedChain.close();
+            requeueFailedObservations();
+            if (maxAge > 0) {
+                // The node connectors which are not observed again have to be aged as well
+                writeExecutor.execute(this::indexInventory);
+            }
+        } catch (IllegalStateException e) {
+            LOG.warn("Failed to close chain", e);
         }
     }
 }
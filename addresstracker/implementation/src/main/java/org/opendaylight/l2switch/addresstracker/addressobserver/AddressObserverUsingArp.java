@@ -7,6 +7,7 @@
  */
 package org.opendaylight.l2switch.addresstracker.addressobserver;
 
+import org.opendaylight.l2switch.addresstracker.addressobserver.AddressTrackerStatistics.Protocol;
 import org.opendaylight.mdsal.binding.api.NotificationService.Listener;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IetfInetUtil;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketReceived;
@@ -22,6 +23,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.e
  * returned to the network after the addresses are learned.
  */
 public class AddressObserverUsingArp implements Listener<ArpPacketReceived> {
+    private static final String UNSPECIFIED_IPV4_ADDRESS = "0.0.0.0";
 
     private final AddressObservationWriter addressObservationWriter;
 
@@ -57,7 +59,12 @@ public class AddressObserverUsingArp implements Listener<ArpPacketReceived> {
             return;
         }
 
-        addressObservationWriter.addAddress(ethernetPacket.getSourceMac(),
-            IetfInetUtil.ipAddressFor(arpPacket.getSourceProtocolAddress()), rawPacket.getIngress());
+        // Probes carry no sender address, do not parse it
+        final String sourceProtocolAddress = arpPacket.getSourceProtocolAddress();
+        if (sourceProtocolAddress != null && !UNSPECIFIED_IPV4_ADDRESS.equals(sourceProtocolAddress)) {
+            addressObservationWriter.observationReceived(Protocol.ARP);
+            addressObservationWriter.addAddress(ethernetPacket.getSourceMac(),
+                IetfInetUtil.ipAddressFor(sourceProtocolAddress), rawPacket.getIngress());
+        }
     }
 }
@@ -7,8 +7,13 @@
  */
 package org.opendaylight.l2switch.addresstracker.addressobserver;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.opendaylight.l2switch.addresstracker.addressobserver.AddressTrackerStatistics.Protocol;
 import org.opendaylight.mdsal.binding.api.NotificationService.Listener;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IetfInetUtil;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.PacketChain;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.packet.chain.packet.RawPacket;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.packet.chain.packet.raw.packet.RawPacketFields;
@@ -23,12 +28,19 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ipv4.rev140528.ipv4.
  * returned to the network after the addresses are learned.
  */
 public class AddressObserverUsingIpv4 implements Listener<Ipv4PacketReceived> {
-    private static final String IPV4_IP_TO_IGNORE = "0.0.0.0";
+    private static final Ipv4Address IPV4_IP_TO_IGNORE = new Ipv4Address("0.0.0.0");
 
     private final AddressObservationWriter addressObservationWriter;
+    private final @Nullable AddressObservationFilter addressObservationFilter;
 
     public AddressObserverUsingIpv4(AddressObservationWriter addressObservationWriter) {
+        this(addressObservationWriter, null);
+    }
+
+    public AddressObserverUsingIpv4(AddressObservationWriter addressObservationWriter,
+            @Nullable AddressObservationFilter addressObservationFilter) {
         this.addressObservationWriter = addressObservationWriter;
+        this.addressObservationFilter = addressObservationFilter;
     }
 
     /**
@@ -59,9 +71,20 @@ public class AddressObserverUsingIpv4 implements Listener<Ipv4PacketReceived> {
             return;
         }
 
-        if (!IPV4_IP_TO_IGNORE.equals(ipv4Packet.getSourceIpv4().getValue())) {
-            addressObservationWriter.addAddress(ethernetPacket.getSourceMac(),
-                IetfInetUtil.ipAddressFor(ipv4Packet.getSourceIpv4().getValue()), rawPacket.getIngress());
+        // The decoded address is used as it is, without going through its string form again
+        final Ipv4Address sourceIpv4 = ipv4Packet.getSourceIpv4();
+        if (sourceIpv4 == null || IPV4_IP_TO_IGNORE.equals(sourceIpv4)) {
+            return;
+        }
+        final IpAddress ipAddress = new IpAddress(sourceIpv4);
+        final MacAddress macAddress = ethernetPacket.getSourceMac();
+        final NodeConnectorRef ingress = rawPacket.getIngress();
+        addressObservationWriter.observationReceived(Protocol.IPV4);
+        if (addressObservationFilter == null || macAddress == null || ingress == null
+                || addressObservationFilter.isNew(macAddress, ipAddress, ingress)) {
+            addressObservationWriter.addAddress(macAddress, ipAddress, ingress);
+        } else {
+            addressObservationWriter.observationSuppressed();
         }
     }
 }
@@ -7,8 +7,13 @@
  */
 package org.opendaylight.l2switch.addresstracker.addressobserver;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.opendaylight.l2switch.addresstracker.addressobserver.AddressTrackerStatistics.Protocol;
 import org.opendaylight.mdsal.binding.api.NotificationService.Listener;
-import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IetfInetUtil;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv6Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.PacketChain;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.packet.chain.packet.RawPacket;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.basepacket.rev140528.packet.chain.grp.packet.chain.packet.raw.packet.RawPacketFields;
@@ -22,12 +27,19 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ipv6.rev140528.ipv6.
  * returned to the network after the addresses are learned.
  */
 public class AddressObserverUsingIpv6 implements Listener<Ipv6PacketReceived> {
-    private static final String IPV6_IP_TO_IGNORE = "0:0:0:0:0:0:0:0";
+    private static final Ipv6Address IPV6_IP_TO_IGNORE = new Ipv6Address("0:0:0:0:0:0:0:0");
 
     private final AddressObservationWriter addressObservationWriter;
+    private final @Nullable AddressObservationFilter addressObservationFilter;
 
     public AddressObserverUsingIpv6(AddressObservationWriter addressObservationWriter) {
+        this(addressObservationWriter, null);
+    }
+
+    public AddressObserverUsingIpv6(AddressObservationWriter addressObservationWriter,
+            @Nullable AddressObservationFilter addressObservationFilter) {
         this.addressObservationWriter = addressObservationWriter;
+        this.addressObservationFilter = addressObservationFilter;
     }
 
     /**
@@ -58,9 +70,20 @@ public class AddressObserverUsingIpv6 implements Listener<Ipv6PacketReceived> {
             return;
         }
 
-        if (!IPV6_IP_TO_IGNORE.equals(ipv6Packet.getSourceIpv6().getValue())) {
-            addressObservationWriter.addAddress(ethernetPacket.getSourceMac(),
-                IetfInetUtil.ipAddressFor(ipv6Packet.getSourceIpv6().getValue()), rawPacket.getIngress());
+        // The decoded address is used as it is, without going through its string form again
+        final Ipv6Address sourceIpv6 = ipv6Packet.getSourceIpv6();
+        if (sourceIpv6 == null || IPV6_IP_TO_IGNORE.equals(sourceIpv6)) {
+            return;
+        }
+        final IpAddress ipAddress = new IpAddress(sourceIpv6);
+        final MacAddress macAddress = ethernetPacket.getSourceMac();
+        final NodeConnectorRef ingress = rawPacket.getIngress();
+        addressObservationWriter.observationReceived(Protocol.IPV6);
+        if (addressObservationFilter == null || macAddress == null || ingress == null
+                || addressObservationFilter.isNew(macAddress, ipAddress, ingress)) {
+            addressObservationWriter.addAddress(macAddress, ipAddress, ingress);
+        } else {
+            addressObservationWriter.observationSuppressed();
         }
     }
 }
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.addresstracker.addressobserver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IetfInetUtil;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv6Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.IetfYangUtil;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+
+/**
+ * AddressSnapshot stores the address observations of node-connectors in a
+ * local file, so that they survive a restart of the controller.
+ *
+ * <p>
+ * The addresses of a node-connector are kept in a single long array, each
+ * address taking {@link #ADDRESS_LONGS} of them: the MAC address, the IP
+ * address as 128 bits, IPv4 addresses being mapped into IPv6 ones, and the
+ * first and last seen timestamps. The file holds the arrays of all
+ * node-connectors, preceded by the ids of their node and node-connector.
+ */
+final class AddressSnapshot {
+    static final int ADDRESS_LONGS = 5;
+
+    private static final int MAGIC = 0x4c324154;
+    private static final int VERSION = 1;
+    private static final long IPV4_MAPPED_PREFIX = 0xffffL << 32;
+    private static final int MAC_OFFSET = 0;
+    private static final int IP_HIGH_OFFSET = 1;
+    private static final int IP_LOW_OFFSET = 2;
+    private static final int FIRST_SEEN_OFFSET = 3;
+    private static final int LAST_SEEN_OFFSET = 4;
+
+    private AddressSnapshot() {
+        // Hidden on purpose
+    }
+
+    /**
+     * Reads a snapshot file.
+     *
+     * @param file
+     *            The snapshot file.
+     * @return The addresses of each node-connector, empty if the file does not exist.
+     * @throws IOException if the file cannot be read or is not a snapshot.
+     */
+    static Map<NodeConnectorRef, long[]> read(Path file) throws IOException {
+        final Map<NodeConnectorRef, long[]> addresses = new HashMap<>();
+        if (!Files.exists(file)) {
+            return addresses;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not an address snapshot: " + file);
+            }
+            final int ports = in.readInt();
+            for (int i = 0; i < ports; i++) {
+                final NodeConnectorRef nodeConnectorRef = nodeConnectorRef(in.readUTF(), in.readUTF());
+                final long[] table = new long[in.readInt() * ADDRESS_LONGS];
+                for (int j = 0; j < table.length; j++) {
+                    table[j] = in.readLong();
+                }
+                addresses.put(nodeConnectorRef, table);
+            }
+        }
+        return addresses;
+    }
+
+    /**
+     * Writes a snapshot file. The file is replaced once the snapshot is
+     * complete, a failed write leaves the previous snapshot in place.
+     *
+     * @param file
+     *            The snapshot file.
+     * @param addresses
+     *            The addresses of each node-connector.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(Path file, Map<NodeConnectorRef, long[]> addresses) throws IOException {
+        final Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(addresses.size());
+            for (Map.Entry<NodeConnectorRef, long[]> entry : addresses.entrySet()) {
+                final InstanceIdentifier<?> path = ((DataObjectIdentifier<?>) entry.getKey().getValue()).toLegacy();
+                out.writeUTF(path.firstKeyOf(Node.class).getId().getValue());
+                out.writeUTF(path.firstKeyOf(NodeConnector.class).getId().getValue());
+                final long[] table = entry.getValue();
+                out.writeInt(table.length / ADDRESS_LONGS);
+                for (long value : table) {
+                    out.writeLong(value);
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static void setAddress(long[] table, int index, MacAddress mac, IpAddress ip, long firstSeen, long lastSeen) {
+        final int offset = index * ADDRESS_LONGS;
+        table[offset + MAC_OFFSET] = toLong(IetfYangUtil.macAddressBytes(mac), 0, 6);
+        final byte[] ipBytes = ip.getIpv4Address() != null ? IetfInetUtil.ipv4AddressBytes(ip.getIpv4Address())
+            : IetfInetUtil.ipv6AddressBytes(ip.getIpv6Address());
+        if (ipBytes.length == 4) {
+            table[offset + IP_HIGH_OFFSET] = 0;
+            table[offset + IP_LOW_OFFSET] = IPV4_MAPPED_PREFIX | toLong(ipBytes, 0, 4);
+        } else {
+            table[offset + IP_HIGH_OFFSET] = toLong(ipBytes, 0, 8);
+            table[offset + IP_LOW_OFFSET] = toLong(ipBytes, 8, 8);
+        }
+        table[offset + FIRST_SEEN_OFFSET] = firstSeen;
+        table[offset + LAST_SEEN_OFFSET] = lastSeen;
+    }
+
+    static MacAddress mac(long[] table, int index) {
+        return IetfYangUtil.macAddressFor(toBytes(table[index * ADDRESS_LONGS + MAC_OFFSET], 6));
+    }
+
+    static IpAddress ip(long[] table, int index) {
+        final long high = table[index * ADDRESS_LONGS + IP_HIGH_OFFSET];
+        final long low = table[index * ADDRESS_LONGS + IP_LOW_OFFSET];
+        final byte[] bytes;
+        if (high == 0 && (low & ~0xffffffffL) == IPV4_MAPPED_PREFIX) {
+            bytes = toBytes(low, 4);
+        } else {
+            bytes = new byte[16];
+            System.arraycopy(toBytes(high, 8), 0, bytes, 0, 8);
+            System.arraycopy(toBytes(low, 8), 0, bytes, 8, 8);
+        }
+
+        // Written the way the packet decoders write addresses, for restored addresses to match observed ones
+        final InetAddress address;
+        try {
+            address = InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Invalid address length " + bytes.length, e);
+        }
+        return address instanceof Inet4Address ? new IpAddress(new Ipv4Address(address.getHostAddress()))
+            : new IpAddress(new Ipv6Address(address.getHostAddress()));
+    }
+
+    static long firstSeen(long[] table, int index) {
+        return table[index * ADDRESS_LONGS + FIRST_SEEN_OFFSET];
+    }
+
+    static long lastSeen(long[] table, int index) {
+        return table[index * ADDRESS_LONGS + LAST_SEEN_OFFSET];
+    }
+
+    private static NodeConnectorRef nodeConnectorRef(String nodeId, String nodeConnectorId) {
+        return new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId(nodeId)))
+            .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId(nodeConnectorId)))
+            .build());
+    }
+
+    private static long toLong(byte[] bytes, int offset, int length) {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            value = value << Byte.SIZE | bytes[i] & 0xff;
+        }
+        return value;
+    }
+
+    private static byte[] toBytes(long value, int length) {
+        final byte[] bytes = new byte[length];
+        for (int i = length - 1; i >= 0; i--) {
+            bytes[i] = (byte) (value >>> Byte.SIZE * (length - 1 - i));
+        }
+        return bytes;
+    }
+}
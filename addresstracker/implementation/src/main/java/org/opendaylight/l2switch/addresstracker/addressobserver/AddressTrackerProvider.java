@@ -7,12 +7,18 @@
  */
 package org.opendaylight.l2switch.addresstracker.addressobserver;
 
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import org.eclipse.jdt.annotation.NonNull;
 import org.opendaylight.mdsal.binding.api.DataBroker;
+import org.opendaylight.mdsal.binding.api.NotificationPublishService;
 import org.opendaylight.mdsal.binding.api.NotificationService;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.address.tracker.config.rev160621.AddressTrackerConfig;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketReceived;
@@ -27,25 +33,62 @@ public class AddressTrackerProvider {
     private static final String ARP_PACKET_TYPE = "arp";
     private static final String IPV4_PACKET_TYPE = "ipv4";
     private static final String IPV6_PACKET_TYPE = "ipv6";
+    private static final String STATISTICS_MBEAN_NAME = "org.opendaylight.l2switch:type=AddressTracker";
 
     private final List<Registration> listenerRegistrations = new ArrayList<>();
     private final NotificationService notificationService;
+    private final NotificationPublishService notificationPublishService;
     private final DataBroker dataBroker;
     private final long timestampUpdateInterval;
     private final String observerAddressesFrom;
+    private final long observationBatchDelay;
+    private final int observationBatchSize;
+    private final long addressMaxAge;
+    private final int maxAddressesPerPort;
+    private final boolean detectAddressMoves;
+    private final int ipObservationFilterBits;
+    private final String addressSnapshotFile;
+    private final long addressSnapshotInterval;
+    private final long statisticsInterval;
+    private AddressObservationWriter addressObservationWriter;
+    private ObjectName statisticsName;
 
     public AddressTrackerProvider(final DataBroker dataBroker, final NotificationService notificationService,
-            final AddressTrackerConfig config) {
+            final NotificationPublishService notificationPublishService, final AddressTrackerConfig config) {
         this.notificationService = notificationService;
+        this.notificationPublishService = notificationPublishService;
         this.dataBroker = dataBroker;
         this.timestampUpdateInterval = config.getTimestampUpdateInterval().longValue();
         this.observerAddressesFrom = config.getObserveAddressesFrom();
+        this.observationBatchDelay = config.getObservationBatchDelay().longValue();
+        this.observationBatchSize = config.getObservationBatchSize().intValue();
+        this.addressMaxAge = config.getAddressMaxAge().longValue();
+        this.maxAddressesPerPort = config.getMaxAddressesPerPort().intValue();
+        this.detectAddressMoves = config.getDetectAddressMoves();
+        this.ipObservationFilterBits = config.getIpObservationFilterBits().intValue();
+        this.addressSnapshotFile = config.getAddressSnapshotFile();
+        this.addressSnapshotInterval = config.getAddressSnapshotInterval().longValue();
+        this.statisticsInterval = config.getStatisticsInterval().longValue();
     }
 
     public void init() {
         // Setup AddressObserver & AddressObservationWriter
-        AddressObservationWriter addressObservationWriter = new AddressObservationWriter(dataBroker);
+        addressObservationWriter = new AddressObservationWriter(dataBroker, notificationPublishService);
         addressObservationWriter.setTimestampUpdateInterval(timestampUpdateInterval);
+        addressObservationWriter.setBatchDelay(observationBatchDelay);
+        addressObservationWriter.setBatchSize(observationBatchSize);
+        addressObservationWriter.setMaxAddressesPerPort(maxAddressesPerPort);
+        addressObservationWriter.setDetectAddressMoves(detectAddressMoves);
+        addressObservationWriter.setMaxAge(addressMaxAge);
+        if (addressSnapshotFile != null && !addressSnapshotFile.isEmpty()) {
+            addressObservationWriter.setSnapshot(Path.of(addressSnapshotFile), addressSnapshotInterval);
+        }
+        if (statisticsInterval > 0) {
+            addressObservationWriter.setStatisticsInterval(statisticsInterval);
+        }
+        registerStatistics(addressObservationWriter.getStatistics());
+        this.listenerRegistrations.add(addressObservationWriter.registerAsDataChangeListener());
+        this.listenerRegistrations.add(addressObservationWriter.registerAsNodeConnectorListener());
         Set<String> packetTypes = processObserveAddressesFrom(observerAddressesFrom);
 
         if (packetTypes.isEmpty()) { // set default to arp
@@ -59,24 +102,53 @@ public class AddressTrackerProvider {
                 new AddressObserverUsingArp(addressObservationWriter)));
         }
 
+        // Observations repeated within the update interval would not be written anyway
+        final AddressObservationFilter ipObservationFilter = ipObservationFilterBits > 0 && timestampUpdateInterval > 0
+            ? new AddressObservationFilter(ipObservationFilterBits, Math.max(timestampUpdateInterval / 2, 1)) : null;
         if (packetTypes.contains(IPV4_PACKET_TYPE)) {
             // Register AddressObserver for notifications
             this.listenerRegistrations.add(notificationService.registerListener(Ipv4PacketReceived.class,
-                new AddressObserverUsingIpv4(addressObservationWriter)));
+                new AddressObserverUsingIpv4(addressObservationWriter, ipObservationFilter)));
         }
         if (packetTypes.contains(IPV6_PACKET_TYPE)) {
             // Register AddressObserver for notifications
             this.listenerRegistrations.add(notificationService.registerListener(Ipv6PacketReceived.class,
-                new AddressObserverUsingIpv6(addressObservationWriter)));
+                new AddressObserverUsingIpv6(addressObservationWriter, ipObservationFilter)));
         }
         LOG.info("AddressTracker initialized.");
     }
 
     public void close() {
         listenerRegistrations.forEach(reg -> reg.close());
+        unregisterStatistics();
+        if (addressObservationWriter != null) {
+            addressObservationWriter.close();
+        }
         LOG.info("AddressTracker torn down.");
     }
 
+    private void registerStatistics(AddressTrackerStatistics statistics) {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            final ObjectName name = new ObjectName(STATISTICS_MBEAN_NAME);
+            server.registerMBean(statistics, name);
+            statisticsName = name;
+        } catch (JMException e) {
+            LOG.warn("Failed to register address tracker statistics with JMX", e);
+        }
+    }
+
+    private void unregisterStatistics() {
+        if (statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            } catch (JMException e) {
+                LOG.warn("Failed to unregister address tracker statistics from JMX", e);
+            }
+            statisticsName = null;
+        }
+    }
+
     private static @NonNull Set<String> processObserveAddressesFrom(String observeAddressesFrom) {
         Set<String> packetTypes = new HashSet<>();
         if (observeAddressesFrom == null || observeAddressesFrom.isEmpty()) {
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.addresstracker.addressobserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressObservationStatistics;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressObservationStatisticsBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.observation.statistics.CommitLatencyBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.observation.statistics.QueueWaitBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.latency.histogram.Bucket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.latency.histogram.BucketBuilder;
+import org.opendaylight.yangtools.binding.util.BindingMap;
+import org.opendaylight.yangtools.yang.common.Uint64;
+
+/**
+ * AddressTrackerStatistics counts the address observations made and written
+ * by the address tracker, and how long writing them takes. The counters are
+ * updated without locking and read through JMX or as the operational
+ * address-observation-statistics container.
+ */
+public final class AddressTrackerStatistics implements AddressTrackerStatisticsMXBean {
+    /**
+     * The protocols addresses are observed in.
+     */
+    public enum Protocol {
+        ARP,
+        IPV4,
+        IPV6
+    }
+
+    private static final int BUCKETS = 32;
+
+    private final LongAdder arpObservationsReceived = new LongAdder();
+    private final LongAdder ipv4ObservationsReceived = new LongAdder();
+    private final LongAdder ipv6ObservationsReceived = new LongAdder();
+    private final LongAdder observationsSuppressed = new LongAdder();
+    private final LongAdder addressChangesWritten = new LongAdder();
+    private final LongAdder addressChangesFailed = new LongAdder();
+    private final AtomicLongArray queueWait = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray commitLatency = new AtomicLongArray(BUCKETS);
+
+    void observationReceived(Protocol protocol) {
+        switch (protocol) {
+            case ARP -> arpObservationsReceived.increment();
+            case IPV4 -> ipv4ObservationsReceived.increment();
+            case IPV6 -> ipv6ObservationsReceived.increment();
+            default -> throw new IllegalArgumentException("Unhandled protocol " + protocol);
+        }
+    }
+
+    void observationSuppressed() {
+        observationsSuppressed.increment();
+    }
+
+    void addressChangesWritten(int changes) {
+        addressChangesWritten.add(changes);
+    }
+
+    void addressChangesFailed(int changes) {
+        addressChangesFailed.add(changes);
+    }
+
+    void recordQueueWait(long micros) {
+        queueWait.incrementAndGet(bucket(micros));
+    }
+
+    void recordCommitLatency(long micros) {
+        commitLatency.incrementAndGet(bucket(micros));
+    }
+
+    @Override
+    public long getArpObservationsReceived() {
+        return arpObservationsReceived.sum();
+    }
+
+    @Override
+    public long getIpv4ObservationsReceived() {
+        return ipv4ObservationsReceived.sum();
+    }
+
+    @Override
+    public long getIpv6ObservationsReceived() {
+        return ipv6ObservationsReceived.sum();
+    }
+
+    @Override
+    public long getObservationsSuppressed() {
+        return observationsSuppressed.sum();
+    }
+
+    @Override
+    public long getAddressChangesWritten() {
+        return addressChangesWritten.sum();
+    }
+
+    @Override
+    public long getAddressChangesFailed() {
+        return addressChangesFailed.sum();
+    }
+
+    @Override
+    public long[] getQueueWaitHistogram() {
+        return counts(queueWait);
+    }
+
+    @Override
+    public long[] getCommitLatencyHistogram() {
+        return counts(commitLatency);
+    }
+
+    /**
+     * Returns the current counters as the operational
+     * address-observation-statistics container. Empty histogram buckets are
+     * left out.
+     */
+    AddressObservationStatistics toOperational() {
+        return new AddressObservationStatisticsBuilder()
+            .setArpObservationsReceived(Uint64.fromLongBits(getArpObservationsReceived()))
+            .setIpv4ObservationsReceived(Uint64.fromLongBits(getIpv4ObservationsReceived()))
+            .setIpv6ObservationsReceived(Uint64.fromLongBits(getIpv6ObservationsReceived()))
+            .setObservationsSuppressed(Uint64.fromLongBits(getObservationsSuppressed()))
+            .setAddressChangesWritten(Uint64.fromLongBits(getAddressChangesWritten()))
+            .setAddressChangesFailed(Uint64.fromLongBits(getAddressChangesFailed()))
+            .setQueueWait(new QueueWaitBuilder().setBucket(BindingMap.of(buckets(queueWait))).build())
+            .setCommitLatency(new CommitLatencyBuilder().setBucket(BindingMap.of(buckets(commitLatency))).build())
+            .build();
+    }
+
+    private static int bucket(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        return Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros - 1), BUCKETS - 1);
+    }
+
+    private static long[] counts(AtomicLongArray histogram) {
+        final long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    private static List<Bucket> buckets(AtomicLongArray histogram) {
+        final List<Bucket> buckets = new ArrayList<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            final long count = histogram.get(i);
+            if (count != 0) {
+                buckets.add(new BucketBuilder()
+                    .setUpperBound(i < BUCKETS - 1 ? Uint64.valueOf(1L << i) : Uint64.MAX_VALUE)
+                    .setCount(Uint64.fromLongBits(count))
+                    .build());
+            }
+        }
+        return buckets;
+    }
+}
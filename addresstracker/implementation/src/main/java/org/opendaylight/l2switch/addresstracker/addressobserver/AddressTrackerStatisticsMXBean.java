@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.addresstracker.addressobserver;
+
+/**
+ * The address tracker counters, as exposed through JMX.
+ *
+ * <p>
+ * The histograms are arrays of bucket counts: bucket i counts the latencies
+ * of up to 2^i microseconds which are larger than 2^(i-1), the last bucket
+ * counts all larger latencies.
+ */
+public interface AddressTrackerStatisticsMXBean {
+
+    long getArpObservationsReceived();
+
+    long getIpv4ObservationsReceived();
+
+    long getIpv6ObservationsReceived();
+
+    long getObservationsSuppressed();
+
+    long getAddressChangesWritten();
+
+    long getAddressChangesFailed();
+
+    long[] getQueueWaitHistogram();
+
+    long[] getCommitLatencyHistogram();
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.addresstracker.addressobserver;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+
+class AddressObservationFilterTest {
+    private final MacAddress macAddress = new MacAddress("ba:43:52:ce:09:f4");
+    private final IpAddress ipAddress = new IpAddress(new Ipv4Address("10.0.0.1"));
+
+    @Test
+    void isNewTest() {
+        final AddressObservationFilter filter = new AddressObservationFilter(1 << 16, 600000);
+        assertTrue(filter.isNew(macAddress, ipAddress, ncRef("foo")));
+        assertFalse(filter.isNew(macAddress, ipAddress, ncRef("foo")));
+        // The same address on another node connector, or another address, is a new observation
+        assertTrue(filter.isNew(macAddress, ipAddress, ncRef("bar")));
+        assertTrue(filter.isNew(macAddress, new IpAddress(new Ipv4Address("10.0.0.2")), ncRef("foo")));
+    }
+
+    @Test
+    void isNewAfterPeriodsTest() throws Exception {
+        final AddressObservationFilter filter = new AddressObservationFilter(1 << 16, 50);
+        assertTrue(filter.isNew(macAddress, ipAddress, ncRef("foo")));
+        Thread.sleep(60);
+        // Remembered by the previous generation
+        assertFalse(filter.isNew(macAddress, ipAddress, ncRef("foo")));
+        Thread.sleep(60);
+        assertTrue(filter.isNew(macAddress, ipAddress, ncRef("foo")));
+    }
+
+    private static NodeConnectorRef ncRef(String ncId) {
+        return new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId("abc")))
+            .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId(ncId)))
+            .build());
+    }
+}
@@ -7,70 +7,132 @@
  */
 package org.opendaylight.l2switch.addresstracker.addressobserver;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
+import com.google.common.util.concurrent.FutureCallback;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.opendaylight.mdsal.binding.api.DataBroker;
+import org.opendaylight.mdsal.binding.api.DataObjectModification;
+import org.opendaylight.mdsal.binding.api.DataObjectModification.ModificationType;
+import org.opendaylight.mdsal.binding.api.DataTreeChangeListener;
+import org.opendaylight.mdsal.binding.api.DataTreeModification;
+import org.opendaylight.mdsal.binding.api.NotificationPublishService;
 import org.opendaylight.mdsal.binding.api.ReadTransaction;
+import org.opendaylight.mdsal.binding.api.TransactionChain;
 import org.opendaylight.mdsal.binding.api.WriteTransaction;
 import org.opendaylight.mdsal.common.api.CommitInfo;
 import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
+import org.opendaylight.mdsal.common.api.TransactionCommitFailedException;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressMoved;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodesBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+import org.opendaylight.yangtools.binding.DataObjectReference;
 import org.opendaylight.yangtools.binding.util.BindingMap;
 import org.opendaylight.yangtools.util.concurrent.FluentFutures;
+import org.opendaylight.yangtools.yang.common.Empty;
 import org.opendaylight.yangtools.yang.common.Uint64;
 
 @ExtendWith(MockitoExtension.class)
 class AddressObservationWriterTest {
+    private static final DataObjectIdentifier<Nodes> NODES_PATH = DataObjectIdentifier.builder(Nodes.class).build();
+
     private final MacAddress macAddress = new MacAddress("ba:43:52:ce:09:f4");
+    private final MacAddress otherMacAddress = new MacAddress("ba:43:52:ce:09:f5");
     private final IpAddress ipAddress = new IpAddress(new Ipv4Address("10.0.0.1"));
     private final NodeConnectorId ncId = new NodeConnectorId("foo");
     private final NodeConnectorRef realNcRef = new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
         .child(Node.class, new NodeKey(new NodeId("abc")))
         .child(NodeConnector.class, new NodeConnectorKey(ncId))
         .build());
+    private final NodeConnectorRef otherNcRef = new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+        .child(Node.class, new NodeKey(new NodeId("abc")))
+        .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("bar")))
+        .build());
 
     @Mock
     private DataBroker dataBroker;
     @Mock
+    private NotificationPublishService notificationPublishService;
+    @Mock
+    private TransactionChain transactionChain;
+    @Mock
     private ReadTransaction readTransaction;
     @Mock
     private WriteTransaction writeTransaction;
+    @Mock
+    private DataTreeModification<Addresses> change;
+    @Mock
+    private DataObjectModification<Addresses> rootNode;
+    @Mock
+    private DataTreeModification<NodeConnector> nodeConnectorChange;
+    @Mock
+    private DataObjectModification<NodeConnector> nodeConnectorNode;
+    @Captor
+    private ArgumentCaptor<DataTreeChangeListener<NodeConnector>> nodeConnectorListener;
+    @Captor
+    private ArgumentCaptor<Addresses> address;
+    @Captor
+    private ArgumentCaptor<AddressMoved> addressMoved;
+    @Captor
+    private ArgumentCaptor<FutureCallback<Empty>> chainCallback;
+
+    @TempDir
+    Path tempDir;
 
     private AddressObservationWriter addressObservationWriter;
 
     @BeforeEach
     void beforeEach() {
-        addressObservationWriter = new AddressObservationWriter(dataBroker);
+        doReturn(transactionChain).when(dataBroker).createTransactionChain();
+        addressObservationWriter = new AddressObservationWriter(dataBroker, notificationPublishService);
         addressObservationWriter.setTimestampUpdateInterval(20L);
     }
 
+    @AfterEach
+    void afterEach() {
+        addressObservationWriter.close();
+    }
+
     @Test
     void addAddressTest() throws Exception {
-        doReturn(readTransaction).when(dataBroker).newReadOnlyTransaction();
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
         doReturn(FluentFutures.immediateFluentFuture(Optional.of(
             new NodeConnectorBuilder()
             .setId(ncId)
@@ -85,24 +147,343 @@ class AddressObservationWriterTest {
                 .build())
             .build()))).when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
 
-        doReturn(writeTransaction).when(dataBroker).newWriteOnlyTransaction();
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
         doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
 
         addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
         verify(readTransaction, times(1)).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
         verify(readTransaction, times(1)).close();
-        verify(writeTransaction, times(1)).merge(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
-                any(AddressCapableNodeConnector.class));
-        verify(writeTransaction, times(1)).commit();
+        verify(writeTransaction, times(1)).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                address.capture());
+        // The existing entry is updated in place
+        assertEquals(Uint64.ONE, address.getValue().getId());
+        assertEquals(1410350400L, address.getValue().getFirstSeen());
+    }
+
+    @Test
+    void addAddressNewEntryTest() throws Exception {
+        addressObservationWriter.setTimestampUpdateInterval(600000L);
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder()
+            .setId(ncId)
+            .addAugmentation(new AddressCapableNodeConnectorBuilder()
+                .setAddresses(BindingMap.of(new AddressesBuilder()
+                    .setId(Uint64.valueOf(5))
+                    .setIp(new IpAddress(new Ipv4Address("10.0.0.2")))
+                    .setMac(macAddress)
+                    .setLastSeen(1410350400L)
+                    .setFirstSeen(1410350400L)
+                    .build()))
+                .build())
+            .build()))).when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        addressObservationWriter.addAddress(macAddress, new IpAddress(new Ipv4Address("10.0.0.3")), realNcRef);
+        verify(writeTransaction, timeout(1000).times(2)).commit();
+        // The node connector is read once, each new entry gets its own key past the existing ones
+        verify(readTransaction, times(1)).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        verify(writeTransaction, times(2)).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                address.capture());
+        assertEquals(Uint64.valueOf(6), address.getAllValues().get(0).getId());
+        assertEquals(Uint64.valueOf(7), address.getAllValues().get(1).getId());
+    }
+
+    @Test
+    void addAddressSeenRecentlyTest() throws Exception {
+        addressObservationWriter.setTimestampUpdateInterval(600000L);
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, after(100).times(1)).commit();
+        verify(readTransaction, times(1)).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        assertEquals(1, addressObservationWriter.getStatistics().getObservationsSuppressed());
+    }
+
+    @Test
+    void addAddressAfterDeleteTest() throws Exception {
+        addressObservationWriter.setTimestampUpdateInterval(600000L);
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        doReturn(DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId("abc")))
+            .child(NodeConnector.class, new NodeConnectorKey(ncId))
+            .augmentation(AddressCapableNodeConnector.class)
+            .child(Addresses.class, new AddressesKey(Uint64.ZERO))
+            .build()).when(change).path();
+        doReturn(rootNode).when(change).getRootNode();
+        doReturn(ModificationType.DELETE).when(rootNode).modificationType();
+        doReturn(new AddressesBuilder().setId(Uint64.ZERO).setIp(ipAddress).setMac(macAddress).build())
+            .when(rootNode).dataBefore();
+        addressObservationWriter.onDataTreeChanged(List.of(change));
+
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000).times(2)).commit();
+        verify(readTransaction, times(1)).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+    }
+
+    @Test
+    void addAddressBatchDelayTest() throws Exception {
+        addressObservationWriter.setBatchDelay(50L);
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        // Observations on two node connectors end up in one transaction
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        addressObservationWriter.addAddress(otherMacAddress, ipAddress, otherNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        verify(readTransaction, times(2)).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        verify(transactionChain, times(1)).newWriteOnlyTransaction();
+        verify(writeTransaction, times(2)).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                any(Addresses.class));
+    }
+
+    @Test
+    void addAddressBatchSizeTest() throws Exception {
+        addressObservationWriter.setBatchDelay(600000L);
+        addressObservationWriter.setBatchSize(2);
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        // A full batch is written without waiting for the delay
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, after(100).never()).commit();
+        addressObservationWriter.addAddress(otherMacAddress, ipAddress, otherNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        verify(writeTransaction, times(2)).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                any(Addresses.class));
+    }
+
+    @Test
+    void addAddressMaxAddressesPerPortTest() throws Exception {
+        addressObservationWriter.setMaxAddressesPerPort(1);
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(nodeConnectorWithOldAddress())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        // The new address takes the place of the old one
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        verify(writeTransaction).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                any(Addresses.class));
+        verify(writeTransaction).delete(LogicalDatastoreType.OPERATIONAL, oldAddressPath());
+    }
+
+    @Test
+    void addAddressMaxAgeTest() throws Exception {
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(nodeConnectorWithOldAddress())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(FluentFutures.immediateFluentFuture(Optional.empty()))
+            .when(readTransaction).read(LogicalDatastoreType.OPERATIONAL, NODES_PATH);
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+        addressObservationWriter.setMaxAge(1000L);
+
+        // The old address is removed once it is found stale, the new one stays
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(3000)).delete(LogicalDatastoreType.OPERATIONAL, oldAddressPath());
+        verify(writeTransaction, times(1)).delete(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+    }
+
+    @Test
+    void maxAgeUnobservedTest() throws Exception {
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodesBuilder()
+            .setNode(BindingMap.of(new NodeBuilder()
+                .setId(new NodeId("abc"))
+                .setNodeConnector(BindingMap.of(nodeConnectorWithOldAddress()))
+                .build()))
+            .build())))
+            .when(readTransaction).read(LogicalDatastoreType.OPERATIONAL, NODES_PATH);
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        // The node connector is indexed from the inventory, its old address is removed without being observed
+        addressObservationWriter.setMaxAge(1000L);
+        verify(writeTransaction, timeout(3000)).delete(LogicalDatastoreType.OPERATIONAL, oldAddressPath());
+    }
+
+    @Test
+    void addAddressCommitFailedTest() throws Exception {
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(FluentFutures.immediateFailedFluentFuture(new TransactionCommitFailedException("failed")),
+            CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+        verify(transactionChain).addCallback(chainCallback.capture());
+
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        // The chain fails along with its transaction, the observation is written again on the next chain
+        chainCallback.getValue().onFailure(new TransactionCommitFailedException("failed"));
+        verify(writeTransaction, timeout(1000).times(2)).commit();
+        verify(writeTransaction, times(2)).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+            any(Addresses.class));
+    }
+
+    @Test
+    void addAddressMovedTest() throws Exception {
+        addressObservationWriter.setDetectAddressMoves(true);
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        Thread.sleep(5);
+        // The MAC shows up on another node connector of the node, its address on the former one is removed
+        addressObservationWriter.addAddress(macAddress, ipAddress, otherNcRef);
+        verify(writeTransaction, timeout(1000).times(2)).commit();
+        verify(writeTransaction).delete(LogicalDatastoreType.OPERATIONAL, DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId("abc")))
+            .child(NodeConnector.class, new NodeConnectorKey(ncId))
+            .augmentation(AddressCapableNodeConnector.class)
+            .child(Addresses.class, new AddressesKey(Uint64.ZERO))
+            .build());
+        verify(notificationPublishService).offerNotification(addressMoved.capture());
+        assertEquals(macAddress, addressMoved.getValue().getMac());
+        assertEquals(realNcRef, addressMoved.getValue().getFromNodeConnector());
+        assertEquals(otherNcRef, addressMoved.getValue().getToNodeConnector());
+    }
+
+    @Test
+    void addAddressMoveDetectionDisabledTest() throws Exception {
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000)).commit();
+        Thread.sleep(5);
+        // The MAC is kept on both node connectors
+        addressObservationWriter.addAddress(macAddress, ipAddress, otherNcRef);
+        verify(writeTransaction, timeout(1000).times(2)).commit();
+        verify(writeTransaction, never()).delete(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        verify(notificationPublishService, never()).offerNotification(any(AddressMoved.class));
+    }
+
+    @Test
+    void addAddressRestoredTest() throws Exception {
+        final Path snapshotFile = tempDir.resolve("addresses.bin");
+        final long[] table = new long[AddressSnapshot.ADDRESS_LONGS];
+        AddressSnapshot.setAddress(table, 0, macAddress, new IpAddress(new Ipv4Address("10.0.0.2")),
+            System.currentTimeMillis(), System.currentTimeMillis());
+        AddressSnapshot.write(snapshotFile, Map.of(realNcRef, table));
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+
+        // The restored address is written back without waiting for an observation
+        addressObservationWriter.setSnapshot(snapshotFile, 600000L);
+        verify(writeTransaction, timeout(1000)).commit();
+        verify(writeTransaction).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                address.capture());
+        assertEquals(new IpAddress(new Ipv4Address("10.0.0.2")), address.getValue().getIp());
+
+        // The observed one is written next to it
+        addressObservationWriter.addAddress(macAddress, ipAddress, realNcRef);
+        verify(writeTransaction, timeout(1000).times(2)).commit();
+        verify(writeTransaction, times(2)).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                address.capture());
+        assertEquals(ipAddress, address.getValue().getIp());
+
+        // Both are saved on close
+        addressObservationWriter.close();
+        assertEquals(2, AddressSnapshot.read(snapshotFile).get(realNcRef).length / AddressSnapshot.ADDRESS_LONGS);
+    }
+
+    @Test
+    void restoredOnNodeConnectorAddedTest() throws Exception {
+        final Path snapshotFile = tempDir.resolve("addresses.bin");
+        final long[] table = new long[AddressSnapshot.ADDRESS_LONGS];
+        AddressSnapshot.setAddress(table, 0, macAddress, ipAddress, System.currentTimeMillis(),
+            System.currentTimeMillis());
+        AddressSnapshot.write(snapshotFile, Map.of(realNcRef, table));
+        doReturn(readTransaction).when(transactionChain).newReadOnlyTransaction();
+        doReturn(FluentFutures.immediateFluentFuture(Optional.empty()),
+            FluentFutures.immediateFluentFuture(Optional.of(new NodeConnectorBuilder().setId(ncId).build())))
+            .when(readTransaction).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        addressObservationWriter.registerAsNodeConnectorListener();
+        verify(dataBroker).registerLegacyTreeChangeListener(any(LogicalDatastoreType.class),
+            any(DataObjectReference.class), nodeConnectorListener.capture());
+
+        // The node connector does not exist yet, nothing is written
+        addressObservationWriter.setSnapshot(snapshotFile, 600000L);
+        verify(readTransaction, timeout(1000)).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
+        verify(transactionChain, never()).newWriteOnlyTransaction();
+
+        // Once it is added, its restored address is written back
+        doReturn(writeTransaction).when(transactionChain).newWriteOnlyTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(writeTransaction).commit();
+        doReturn(realNcRef.getValue()).when(nodeConnectorChange).path();
+        doReturn(nodeConnectorNode).when(nodeConnectorChange).getRootNode();
+        doReturn(ModificationType.WRITE).when(nodeConnectorNode).modificationType();
+        nodeConnectorListener.getValue().onDataTreeChanged(List.of(nodeConnectorChange));
+        verify(writeTransaction, timeout(1000)).commit();
+        verify(writeTransaction).put(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
+                address.capture());
+        assertEquals(ipAddress, address.getValue().getIp());
     }
 
     @Test
     void addAddressNullTest() throws Exception {
         addressObservationWriter.addAddress(macAddress, null, realNcRef);
-        verify(readTransaction, times(0)).read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class));
-        verify(readTransaction, times(0)).close();
-        verify(writeTransaction, times(0)).merge(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class),
-                any(AddressCapableNodeConnector.class));
-        verify(writeTransaction, times(0)).commit();
+        verify(transactionChain, after(100).never()).newReadOnlyTransaction();
+        verify(transactionChain, never()).newWriteOnlyTransaction();
+    }
+
+    private NodeConnector nodeConnectorWithOldAddress() {
+        return new NodeConnectorBuilder()
+            .setId(ncId)
+            .addAugmentation(new AddressCapableNodeConnectorBuilder()
+                .setAddresses(BindingMap.of(new AddressesBuilder()
+                    .setId(Uint64.valueOf(5))
+                    .setIp(new IpAddress(new Ipv4Address("10.0.0.2")))
+                    .setMac(macAddress)
+                    .setLastSeen(1410350400L)
+                    .setFirstSeen(1410350400L)
+                    .build()))
+                .build())
+            .build();
+    }
+
+    private DataObjectIdentifier<Addresses> oldAddressPath() {
+        return DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId("abc")))
+            .child(NodeConnector.class, new NodeConnectorKey(ncId))
+            .augmentation(AddressCapableNodeConnector.class)
+            .child(Addresses.class, new AddressesKey(Uint64.valueOf(5)))
+            .build();
     }
 }
@@ -56,6 +56,24 @@ class AddressObserverUsingArpTest {
         verify(addressObservationWriterMock, times(1)).addAddress(any(MacAddress.class), any(IpAddress.class), any());
     }
 
+    @Test
+    void onArpPacketReceivedProbeTest() throws Exception {
+        addressOberserverArp.onNotification(new ArpPacketReceivedBuilder()
+            .setPacketChain(List.of(
+                new PacketChainBuilder()
+                    .setPacket(new RawPacketBuilder().setRawPacketFields(new RawPacketFieldsBuilder().build()).build())
+                    .build(),
+                new PacketChainBuilder()
+                    .setPacket(new EthernetPacketBuilder().setSourceMac(new MacAddress("aa:bb:cc:dd:ee:ff")).build())
+                    .build(),
+                new PacketChainBuilder()
+                    .setPacket(new ArpPacketBuilder().setSourceProtocolAddress("0.0.0.0").build())
+                    .build()))
+            .build());
+        verify(addressObservationWriterMock, times(0)).addAddress(any(MacAddress.class), any(IpAddress.class),
+            any(NodeConnectorRef.class));
+    }
+
     @Test
     void onArpPacketReceivedNullInputTest1() throws Exception {
         addressOberserverArp.onNotification(new ArpPacketReceivedBuilder().setPacketChain(null).build());
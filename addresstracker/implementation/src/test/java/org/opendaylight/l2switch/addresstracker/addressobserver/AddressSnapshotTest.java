@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.addresstracker.addressobserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv6Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+
+class AddressSnapshotTest {
+    private final MacAddress macAddress = new MacAddress("ba:43:52:ce:09:f4");
+    private final IpAddress ipv4Address = new IpAddress(new Ipv4Address("10.0.0.1"));
+    private final IpAddress ipv6Address = new IpAddress(new Ipv6Address("2001:db8:0:0:0:0:0:1"));
+    private final NodeConnectorRef ncRef = new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+        .child(Node.class, new NodeKey(new NodeId("openflow:1")))
+        .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("openflow:1:2")))
+        .build());
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void writeReadTest() throws Exception {
+        final long[] table = new long[2 * AddressSnapshot.ADDRESS_LONGS];
+        AddressSnapshot.setAddress(table, 0, macAddress, ipv4Address, 1410350400L, 1410350500L);
+        AddressSnapshot.setAddress(table, 1, macAddress, ipv6Address, 1410350600L, 1410350700L);
+        final Path file = tempDir.resolve("addresses.bin");
+        AddressSnapshot.write(file, Map.of(ncRef, table));
+
+        final Map<NodeConnectorRef, long[]> read = AddressSnapshot.read(file);
+        assertEquals(1, read.size());
+        final long[] readTable = read.get(ncRef);
+        assertEquals(macAddress, AddressSnapshot.mac(readTable, 0));
+        assertEquals(ipv4Address, AddressSnapshot.ip(readTable, 0));
+        assertEquals(1410350400L, AddressSnapshot.firstSeen(readTable, 0));
+        assertEquals(1410350500L, AddressSnapshot.lastSeen(readTable, 0));
+        assertEquals(macAddress, AddressSnapshot.mac(readTable, 1));
+        assertEquals(ipv6Address, AddressSnapshot.ip(readTable, 1));
+        assertEquals(1410350600L, AddressSnapshot.firstSeen(readTable, 1));
+        assertEquals(1410350700L, AddressSnapshot.lastSeen(readTable, 1));
+    }
+
+    @Test
+    void readMissingFileTest() throws Exception {
+        assertTrue(AddressSnapshot.read(tempDir.resolve("missing.bin")).isEmpty());
+    }
+
+    @Test
+    void readInvalidFileTest() throws Exception {
+        final Path file = tempDir.resolve("invalid.bin");
+        Files.write(file, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+        assertThrows(IOException.class, () -> AddressSnapshot.read(file));
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.addresstracker.addressobserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.opendaylight.l2switch.addresstracker.addressobserver.AddressTrackerStatistics.Protocol;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressObservationStatistics;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.latency.histogram.BucketKey;
+import org.opendaylight.yangtools.yang.common.Uint64;
+
+class AddressTrackerStatisticsTest {
+    private final AddressTrackerStatistics statistics = new AddressTrackerStatistics();
+
+    @Test
+    void countersTest() {
+        statistics.observationReceived(Protocol.ARP);
+        statistics.observationReceived(Protocol.IPV4);
+        statistics.observationReceived(Protocol.IPV4);
+        statistics.observationSuppressed();
+        statistics.addressChangesWritten(5);
+        statistics.addressChangesFailed(2);
+
+        assertEquals(1, statistics.getArpObservationsReceived());
+        assertEquals(2, statistics.getIpv4ObservationsReceived());
+        assertEquals(0, statistics.getIpv6ObservationsReceived());
+        assertEquals(1, statistics.getObservationsSuppressed());
+        assertEquals(5, statistics.getAddressChangesWritten());
+        assertEquals(2, statistics.getAddressChangesFailed());
+    }
+
+    @Test
+    void histogramTest() {
+        statistics.recordCommitLatency(0);
+        statistics.recordCommitLatency(1);
+        statistics.recordCommitLatency(3);
+        statistics.recordCommitLatency(4);
+        statistics.recordCommitLatency(5);
+        statistics.recordCommitLatency(Long.MAX_VALUE);
+
+        final long[] histogram = statistics.getCommitLatencyHistogram();
+        assertEquals(2, histogram[0]);
+        assertEquals(2, histogram[2]);
+        assertEquals(1, histogram[3]);
+        assertEquals(1, histogram[histogram.length - 1]);
+
+        final AddressObservationStatistics operational = statistics.toOperational();
+        assertEquals(4, operational.getCommitLatency().nonnullBucket().size());
+        assertEquals(Uint64.valueOf(2), operational.getCommitLatency().nonnullBucket()
+            .get(new BucketKey(Uint64.valueOf(4))).getCount());
+        assertEquals(Uint64.ONE, operational.getCommitLatency().nonnullBucket()
+            .get(new BucketKey(Uint64.MAX_VALUE)).getCount());
+    }
+}
@@ -27,6 +27,11 @@ public class ArpHandlerProvider {
     private Registration floodTopoListenerReg;
     private Registration floodInvListenerReg;
     private Registration topoNodeListenerReg;
+    private Registration arpResponderListenerReg;
+    private InitialFlowWriter initialFlowWriter;
+    private ArpResponder arpResponder;
+    private ArpRequestCoalescer requestCoalescer;
+    private InventoryReader inventoryReader;
 
     private final NotificationService notificationService;
     private final DataBroker dataBroker;
@@ -57,7 +62,7 @@ public class ArpHandlerProvider {
         } else {
             //Write initial flows to send arp to controller
             LOG.info("ArpHandler is in Reactive Mode");
-            InitialFlowWriter initialFlowWriter = new InitialFlowWriter(rpcService.getRpc(AddFlow.class));
+            initialFlowWriter = new InitialFlowWriter(rpcService.getRpc(AddFlow.class));
             initialFlowWriter.setFlowTableId(arpHandlerConfig.getArpFlowTableId());
             initialFlowWriter.setFlowPriority(arpHandlerConfig.getArpFlowPriority());
             initialFlowWriter.setFlowIdleTimeout(arpHandlerConfig.getArpFlowIdleTimeout());
@@ -66,14 +71,29 @@ public class ArpHandlerProvider {
             topoNodeListenerReg = initialFlowWriter.registerAsDataChangeListener(dataBroker);
 
             // Setup InventoryReader
-            InventoryReader inventoryReader = new InventoryReader(dataBroker);
+            inventoryReader = new InventoryReader(dataBroker);
 
             // Setup PacketDispatcher
             PacketDispatcher packetDispatcher = new PacketDispatcher(inventoryReader,
                 rpcService.getRpc(TransmitPacket.class));
 
+            // Setup ArpResponder, if requests are to be answered by the controller
+            if (arpHandlerConfig.getIsArpResponderMode()) {
+                LOG.info("ArpHandler answers ARP requests for known addresses");
+                arpResponder = new ArpResponder(packetDispatcher,
+                    arpHandlerConfig.getArpResponderEntryMaxAge().toJava());
+                arpResponderListenerReg = arpResponder.registerAsDataChangeListener(dataBroker);
+            }
+
+            // Setup ArpRequestCoalescer, if repeated requests are to be held back
+            final long coalescingWindow = arpHandlerConfig.getArpRequestCoalescingWindow().toJava();
+            if (coalescingWindow > 0) {
+                requestCoalescer = new ArpRequestCoalescer(packetDispatcher, coalescingWindow);
+            }
+
             // Setup ArpPacketHandler
-            ArpPacketHandler arpPacketHandler = new ArpPacketHandler(packetDispatcher);
+            ArpPacketHandler arpPacketHandler = new ArpPacketHandler(packetDispatcher, arpResponder,
+                requestCoalescer);
 
             // Register ArpPacketHandler
             this.listenerRegistration = notificationService.registerListener(ArpPacketReceived.class, arpPacketHandler);
@@ -94,6 +114,21 @@ public class ArpHandlerProvider {
         if (topoNodeListenerReg != null) {
             topoNodeListenerReg.close();
         }
+        if (initialFlowWriter != null) {
+            initialFlowWriter.close();
+        }
+        if (arpResponderListenerReg != null) {
+            arpResponderListenerReg.close();
+        }
+        if (arpResponder != null) {
+            arpResponder.close();
+        }
+        if (requestCoalescer != null) {
+            requestCoalescer.close();
+        }
+        if (inventoryReader != null) {
+            inventoryReader.close();
+        }
         LOG.info("ArpHandler (instance {}) torn down.", this);
     }
 }
@@ -7,6 +7,7 @@
  */
 package org.opendaylight.l2switch.arphandler.core;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.opendaylight.mdsal.binding.api.NotificationService.Listener;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.ArpPacketReceived;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacket;
@@ -21,9 +22,18 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.e
 public class ArpPacketHandler implements Listener<ArpPacketReceived> {
 
     private final PacketDispatcher packetDispatcher;
+    private final @Nullable ArpResponder arpResponder;
+    private final @Nullable ArpRequestCoalescer requestCoalescer;
 
     public ArpPacketHandler(PacketDispatcher packetDispatcher) {
+        this(packetDispatcher, null, null);
+    }
+
+    public ArpPacketHandler(PacketDispatcher packetDispatcher, @Nullable ArpResponder arpResponder,
+            @Nullable ArpRequestCoalescer requestCoalescer) {
         this.packetDispatcher = packetDispatcher;
+        this.arpResponder = arpResponder;
+        this.requestCoalescer = requestCoalescer;
     }
 
     /**
@@ -54,6 +64,16 @@ public class ArpPacketHandler implements Listener<ArpPacketReceived> {
             return;
         }
 
+        // Requests the responder can answer are not dispatched at all
+        if (arpResponder != null && arpResponder.respond(packetReceived.getPayload(), rawPacket.getIngress(),
+                ethernetPacket, arpPacket)) {
+            return;
+        }
+        // So are repeated requests for a target which is already being looked for
+        if (requestCoalescer != null && requestCoalescer.coalesce(packetReceived.getPayload(),
+                rawPacket.getIngress(), ethernetPacket, arpPacket)) {
+            return;
+        }
         packetDispatcher.dispatchPacket(packetReceived.getPayload(), rawPacket.getIngress(),
                 ethernetPacket.getSourceMac(), ethernetPacket.getDestinationMac());
     }
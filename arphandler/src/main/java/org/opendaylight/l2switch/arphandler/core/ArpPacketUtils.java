@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.arphandler.core;
+
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.KnownEtherType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacket;
+
+/**
+ * Layout of the Ethernet/IPv4 ARP packets the controller answers or copies
+ * replies into.
+ */
+final class ArpPacketUtils {
+    static final String UNSPECIFIED_IPV4_ADDRESS = "0.0.0.0";
+    static final int MAC_LENGTH = 6;
+    static final int IPV4_LENGTH = 4;
+    // Offsets within an Ethernet/IPv4 ARP header
+    static final int ARP_OPERATION_OFFSET = 6;
+    static final int ARP_SENDER_HARDWARE_OFFSET = 8;
+    static final int ARP_SENDER_PROTOCOL_OFFSET = 14;
+    static final int ARP_TARGET_HARDWARE_OFFSET = 18;
+    static final int ARP_TARGET_PROTOCOL_OFFSET = 24;
+    static final int ARP_LENGTH = 28;
+
+    private ArpPacketUtils() {
+        // Hidden on purpose
+    }
+
+    /**
+     * Returns the offset of the ARP header within a received frame.
+     *
+     * @param payload
+     *            The received frame.
+     * @param ethernetPacket
+     *            The decoded Ethernet header of the frame.
+     * @param arpPacket
+     *            The decoded ARP header of the frame.
+     * @return the offset of the ARP header, -1 if the frame is not a complete Ethernet/IPv4 ARP packet.
+     */
+    static int arpOffset(byte[] payload, EthernetPacket ethernetPacket, ArpPacket arpPacket) {
+        if (payload == null || ethernetPacket.getPayloadOffset() == null
+                || arpPacket.getProtocolType() != KnownEtherType.Ipv4 || arpPacket.getHardwareLength() == null
+                || arpPacket.getHardwareLength().intValue() != MAC_LENGTH || arpPacket.getProtocolLength() == null
+                || arpPacket.getProtocolLength().intValue() != IPV4_LENGTH) {
+            return -1;
+        }
+        final int arpOffset = ethernetPacket.getPayloadOffset().intValue();
+        return payload.length < arpOffset + ARP_LENGTH ? -1 : arpOffset;
+    }
+}
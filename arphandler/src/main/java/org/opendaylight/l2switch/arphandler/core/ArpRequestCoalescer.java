@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.arphandler.core;
+
+import static java.util.Objects.requireNonNull;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.ARP_SENDER_HARDWARE_OFFSET;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.ARP_TARGET_HARDWARE_OFFSET;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.IPV4_LENGTH;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.MAC_LENGTH;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.UNSPECIFIED_IPV4_ADDRESS;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.KnownOperation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ArpRequestCoalescer keeps bursts of ARP requests for the same target, such
+ * as a gateway after a failover, from being flooded over and over again. The
+ * first request for a target received on a switch is dispatched as usual;
+ * further ones received on that switch within the coalescing window are held
+ * back and their senders remembered. Once the target replies, the reply is
+ * copied to each of them. Requests whose sender cannot be remembered any more
+ * are dispatched as usual.
+ */
+public class ArpRequestCoalescer implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ArpRequestCoalescer.class);
+    private static final int MAX_PENDING_REQUESTERS = 256;
+
+    private final PacketDispatcher packetDispatcher;
+    private final long window;
+    // Target IP -> node id -> requests held back on that node
+    private final Map<String, Map<String, PendingRequests>> pendingRequests = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService expiryExecutor = Executors.newScheduledThreadPool(1);
+
+    /**
+     * Construct an ArpRequestCoalescer.
+     *
+     * @param packetDispatcher
+     *            The PacketDispatcher used to send replies to held back requesters.
+     * @param window
+     *            Time in milliseconds during which repeated requests are held back.
+     */
+    public ArpRequestCoalescer(PacketDispatcher packetDispatcher, long window) {
+        this.packetDispatcher = requireNonNull(packetDispatcher);
+        this.window = window;
+        expiryExecutor.scheduleWithFixedDelay(this::removeExpiredRequests, window, window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Holds back repeated ARP requests and copies replies to the requesters
+     * which have been held back.
+     *
+     * @param payload
+     *            The received frame.
+     * @param ingress
+     *            The NodeConnector where the frame came from.
+     * @param ethernetPacket
+     *            The decoded Ethernet header of the frame.
+     * @param arpPacket
+     *            The decoded ARP header of the frame.
+     * @return true if the packet has been held back and must not be dispatched.
+     */
+    public boolean coalesce(byte[] payload, NodeConnectorRef ingress, EthernetPacket ethernetPacket,
+            ArpPacket arpPacket) {
+        final int arpOffset = ArpPacketUtils.arpOffset(payload, ethernetPacket, arpPacket);
+        if (ingress == null || arpOffset < 0) {
+            return false;
+        }
+
+        final String senderIp = arpPacket.getSourceProtocolAddress();
+        final String targetIp = arpPacket.getDestinationProtocolAddress();
+        if (senderIp == null || targetIp == null) {
+            return false;
+        }
+        if (arpPacket.getOperation() == KnownOperation.Reply) {
+            replyReceived(payload, arpOffset, senderIp);
+            return false;
+        }
+        // Probes and gratuitous requests have to reach all hosts
+        if (arpPacket.getOperation() != KnownOperation.Request || UNSPECIFIED_IPV4_ADDRESS.equals(senderIp)
+                || targetIp.equals(senderIp)) {
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        final byte[] senderBinding = Arrays.copyOfRange(payload, arpOffset + ARP_SENDER_HARDWARE_OFFSET,
+            arpOffset + ARP_SENDER_HARDWARE_OFFSET + MAC_LENGTH + IPV4_LENGTH);
+        final AtomicBoolean dispatch = new AtomicBoolean();
+        // Within a single compute, so that a reply or the expiry cannot remove the requests being added to
+        pendingRequests.compute(targetIp, (ip, current) -> {
+            final Map<String, PendingRequests> pendingByNode = current != null ? current : new ConcurrentHashMap<>();
+            final PendingRequests pending = pendingByNode.compute(PacketDispatcher.getNodeId(ingress),
+                (nodeId, currentPending) -> currentPending == null || currentPending.isExpired(now, window)
+                    ? new PendingRequests(now) : currentPending);
+            dispatch.set(pending.add(senderBinding, ingress));
+            return pendingByNode;
+        });
+        if (dispatch.get()) {
+            // This request opened the window or its sender cannot be remembered, let it be flooded
+            return false;
+        }
+        LOG.trace("Holding back ARP request for {} received on {}", targetIp, ingress);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        expiryExecutor.shutdownNow();
+    }
+
+    private void replyReceived(byte[] reply, int arpOffset, String targetIp) {
+        final Map<String, PendingRequests> pendingByNode = pendingRequests.remove(targetIp);
+        if (pendingByNode == null) {
+            return;
+        }
+        final byte[] replyTarget = Arrays.copyOfRange(reply, arpOffset + ARP_TARGET_HARDWARE_OFFSET,
+            arpOffset + ARP_TARGET_HARDWARE_OFFSET + MAC_LENGTH + IPV4_LENGTH);
+        for (PendingRequests pending : pendingByNode.values()) {
+            for (Requester requester : pending.drain()) {
+                // Dispatched requests get the reply through the data plane
+                if (requester.dispatched || Arrays.equals(requester.senderBinding, replyTarget)) {
+                    continue;
+                }
+                final byte[] copy = reply.clone();
+                System.arraycopy(requester.senderBinding, 0, copy, 0, MAC_LENGTH);
+                System.arraycopy(requester.senderBinding, 0, copy, arpOffset + ARP_TARGET_HARDWARE_OFFSET,
+                    MAC_LENGTH + IPV4_LENGTH);
+                packetDispatcher.sendPacketBack(copy, requester.ingress);
+            }
+        }
+    }
+
+    private void removeExpiredRequests() {
+        final long now = System.currentTimeMillis();
+        for (String targetIp : pendingRequests.keySet()) {
+            pendingRequests.computeIfPresent(targetIp, (ip, pendingByNode) -> {
+                pendingByNode.values().removeIf(pending -> pending.isExpired(now, window));
+                return pendingByNode.isEmpty() ? null : pendingByNode;
+            });
+        }
+    }
+
+    /**
+     * The senders of requests for one target on one node, in arrival order.
+     */
+    private static final class PendingRequests {
+        private final long firstSeen;
+        private final List<Requester> requesters = new ArrayList<>();
+
+        PendingRequests(long firstSeen) {
+            this.firstSeen = firstSeen;
+        }
+
+        boolean isExpired(long now, long window) {
+            return now - firstSeen >= window;
+        }
+
+        /**
+         * Remembers a requester.
+         *
+         * @return true if its request is dispatched: it is the first one, or
+         *         there is no room left to remember it and copy the reply to it.
+         */
+        synchronized boolean add(byte[] senderBinding, NodeConnectorRef ingress) {
+            final boolean first = requesters.isEmpty();
+            if (requesters.stream().anyMatch(pending -> Arrays.equals(pending.senderBinding, senderBinding))) {
+                return false;
+            }
+            if (requesters.size() >= MAX_PENDING_REQUESTERS) {
+                return true;
+            }
+            requesters.add(new Requester(senderBinding, ingress, first));
+            return first;
+        }
+
+        synchronized List<Requester> drain() {
+            final List<Requester> drained = List.copyOf(requesters);
+            requesters.clear();
+            return drained;
+        }
+    }
+
+    private record Requester(byte[] senderBinding, NodeConnectorRef ingress, boolean dispatched) {
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.arphandler.core;
+
+import static java.util.Objects.requireNonNull;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.ARP_OPERATION_OFFSET;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.ARP_SENDER_HARDWARE_OFFSET;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.ARP_SENDER_PROTOCOL_OFFSET;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.ARP_TARGET_HARDWARE_OFFSET;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.ARP_TARGET_PROTOCOL_OFFSET;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.IPV4_LENGTH;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.MAC_LENGTH;
+import static org.opendaylight.l2switch.arphandler.core.ArpPacketUtils.UNSPECIFIED_IPV4_ADDRESS;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.opendaylight.mdsal.binding.api.DataBroker;
+import org.opendaylight.mdsal.binding.api.DataObjectModification;
+import org.opendaylight.mdsal.binding.api.DataTreeChangeListener;
+import org.opendaylight.mdsal.binding.api.DataTreeModification;
+import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.IetfYangUtil;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.KnownOperation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacket;
+import org.opendaylight.yangtools.binding.DataObjectReference;
+import org.opendaylight.yangtools.concepts.Registration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ArpResponder answers ARP requests on behalf of hosts whose MAC address is
+ * already known, so that the requests do not have to be flooded. Its IP to MAC
+ * cache is fed by the addresses observed by the address tracker only. The ARP
+ * packets seen by the {@link ArpPacketHandler} refresh the bindings they agree
+ * with, so that a spoofed sender cannot change the replies. Bindings which
+ * have not been refreshed within the configured maximum age are not used and
+ * get evicted, unless the maximum age is 0.
+ */
+public class ArpResponder implements DataTreeChangeListener<Addresses>, AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ArpResponder.class);
+
+    private final PacketDispatcher packetDispatcher;
+    private final long entryMaxAge;
+    private final Map<String, Binding> bindings = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictionExecutor = Executors.newScheduledThreadPool(1);
+
+    /**
+     * Construct an ArpResponder.
+     *
+     * @param packetDispatcher
+     *            The PacketDispatcher used to send replies.
+     * @param entryMaxAge
+     *            Time in milliseconds after which a binding is no longer used,
+     *            0 to use bindings until the address tracker removes them.
+     */
+    public ArpResponder(PacketDispatcher packetDispatcher, long entryMaxAge) {
+        this.packetDispatcher = requireNonNull(packetDispatcher);
+        this.entryMaxAge = entryMaxAge;
+        if (entryMaxAge > 0) {
+            evictionExecutor.scheduleWithFixedDelay(this::evictExpiredBindings, entryMaxAge, entryMaxAge,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public Registration registerAsDataChangeListener(DataBroker dataBroker) {
+        return dataBroker.registerLegacyTreeChangeListener(LogicalDatastoreType.OPERATIONAL,
+            DataObjectReference.builder(Nodes.class)
+                .child(Node.class)
+                .child(NodeConnector.class)
+                .augmentation(AddressCapableNodeConnector.class)
+                .child(Addresses.class)
+                .build(), this);
+    }
+
+    @Override
+    public void onDataTreeChanged(List<DataTreeModification<Addresses>> changes) {
+        for (DataTreeModification<Addresses> change : changes) {
+            final DataObjectModification<Addresses> rootNode = change.getRootNode();
+            switch (rootNode.modificationType()) {
+                case WRITE, SUBTREE_MODIFIED -> {
+                    final Addresses addresses = rootNode.dataAfter();
+                    final String ip = getIpv4Address(addresses);
+                    if (ip != null && addresses.getMac() != null) {
+                        final Long lastSeen = addresses.getLastSeen();
+                        learn(ip, IetfYangUtil.macAddressBytes(addresses.getMac()),
+                            lastSeen != null ? lastSeen : System.currentTimeMillis());
+                    }
+                }
+                case DELETE -> {
+                    final Addresses addresses = rootNode.dataBefore();
+                    final String ip = getIpv4Address(addresses);
+                    if (ip != null && addresses.getMac() != null) {
+                        final byte[] mac = IetfYangUtil.macAddressBytes(addresses.getMac());
+                        bindings.computeIfPresent(ip, (key, binding) -> Arrays.equals(binding.mac, mac) ? null
+                            : binding);
+                    }
+                }
+                default -> {
+                    // Nothing to do
+                }
+            }
+        }
+    }
+
+    /**
+     * Refreshes the binding confirmed by the sender of an ARP packet and
+     * answers it if it is a request for an address whose MAC address is known.
+     *
+     * @param payload
+     *            The received frame.
+     * @param ingress
+     *            The NodeConnector where the frame came from.
+     * @param ethernetPacket
+     *            The decoded Ethernet header of the frame.
+     * @param arpPacket
+     *            The decoded ARP header of the frame.
+     * @return true if a reply was sent and the request need not be dispatched.
+     */
+    public boolean respond(byte[] payload, NodeConnectorRef ingress, EthernetPacket ethernetPacket,
+            ArpPacket arpPacket) {
+        final int arpOffset = ArpPacketUtils.arpOffset(payload, ethernetPacket, arpPacket);
+        if (ingress == null || arpOffset < 0) {
+            return false;
+        }
+
+        final long now = System.currentTimeMillis();
+        final String senderIp = arpPacket.getSourceProtocolAddress();
+        final boolean isProbe = senderIp == null || UNSPECIFIED_IPV4_ADDRESS.equals(senderIp);
+        if (!isProbe) {
+            refresh(senderIp, Arrays.copyOfRange(payload, arpOffset + ARP_SENDER_HARDWARE_OFFSET,
+                arpOffset + ARP_SENDER_HARDWARE_OFFSET + MAC_LENGTH), now);
+        }
+
+        // Probes and gratuitous requests have to reach the hosts themselves
+        final String targetIp = arpPacket.getDestinationProtocolAddress();
+        if (arpPacket.getOperation() != KnownOperation.Request || isProbe || targetIp == null
+                || targetIp.equals(senderIp)) {
+            return false;
+        }
+        final Binding binding = bindings.get(targetIp);
+        if (binding == null) {
+            return false;
+        }
+        if (isExpired(binding, now)) {
+            bindings.remove(targetIp, binding);
+            return false;
+        }
+
+        final boolean sent = packetDispatcher.sendPacketBack(buildReply(payload, arpOffset, binding.mac), ingress);
+        if (sent) {
+            LOG.trace("Answered ARP request for {} received on {}", targetIp, ingress);
+        }
+        return sent;
+    }
+
+    @Override
+    public void close() {
+        evictionExecutor.shutdownNow();
+    }
+
+    private void learn(String ip, byte[] mac, long lastSeen) {
+        bindings.merge(ip, new Binding(mac, lastSeen),
+            (current, updated) -> current.lastSeen > updated.lastSeen ? current : updated);
+    }
+
+    /**
+     * Refreshes a binding known from the address tracker, provided the sender
+     * agrees with it. Senders of unknown addresses are not learned.
+     */
+    private void refresh(String ip, byte[] mac, long lastSeen) {
+        bindings.computeIfPresent(ip, (key, binding) -> binding.lastSeen < lastSeen && Arrays.equals(binding.mac, mac)
+            ? new Binding(binding.mac, lastSeen) : binding);
+    }
+
+    private boolean isExpired(Binding binding, long now) {
+        return entryMaxAge > 0 && now - binding.lastSeen > entryMaxAge;
+    }
+
+    private void evictExpiredBindings() {
+        final long now = System.currentTimeMillis();
+        bindings.values().removeIf(binding -> isExpired(binding, now));
+    }
+
+    /**
+     * Turns a copy of an ARP request into the reply the target would send,
+     * keeping any VLAN tags of the request.
+     */
+    private static byte[] buildReply(byte[] request, int arpOffset, byte[] targetMac) {
+        final byte[] reply = request.clone();
+        // Ethernet header: from the target back to the requester
+        System.arraycopy(request, MAC_LENGTH, reply, 0, MAC_LENGTH);
+        System.arraycopy(targetMac, 0, reply, MAC_LENGTH, MAC_LENGTH);
+        // ARP header: the requested binding becomes the sender, the requester the target
+        reply[arpOffset + ARP_OPERATION_OFFSET] = 0;
+        reply[arpOffset + ARP_OPERATION_OFFSET + 1] = (byte) KnownOperation.Reply.getIntValue();
+        System.arraycopy(targetMac, 0, reply, arpOffset + ARP_SENDER_HARDWARE_OFFSET, MAC_LENGTH);
+        System.arraycopy(request, arpOffset + ARP_TARGET_PROTOCOL_OFFSET, reply,
+            arpOffset + ARP_SENDER_PROTOCOL_OFFSET, IPV4_LENGTH);
+        System.arraycopy(request, arpOffset + ARP_SENDER_HARDWARE_OFFSET, reply,
+            arpOffset + ARP_TARGET_HARDWARE_OFFSET, MAC_LENGTH + IPV4_LENGTH);
+        return reply;
+    }
+
+    private static String getIpv4Address(Addresses addresses) {
+        if (addresses == null || addresses.getIp() == null || addresses.getIp().getIpv4Address() == null) {
+            return null;
+        }
+        return addresses.getIp().getIpv4Address().getValue();
+    }
+
+    private record Binding(byte[] mac, long lastSeen) {
+    }
+}
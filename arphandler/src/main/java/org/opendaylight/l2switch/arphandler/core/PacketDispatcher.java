@@ -12,9 +12,14 @@ import static java.util.Objects.requireNonNull;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.MoreExecutors;
+import java.util.ArrayList;
 import java.util.List;
 import org.opendaylight.l2switch.arphandler.inventory.InventoryReader;
 import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.OutputActionCaseBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.action.output.action._case.OutputActionBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.Action;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.action.types.rev131112.action.list.ActionBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeRef;
@@ -26,8 +31,10 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.Tr
 import org.opendaylight.yangtools.binding.BindingInstanceIdentifier;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
 import org.opendaylight.yangtools.binding.PropertyIdentifier;
+import org.opendaylight.yangtools.binding.util.BindingMap;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
 import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.Uint16;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,7 +53,9 @@ public class PacketDispatcher {
     }
 
     /**
-     * Dispatches the packet in the appropriate way - flood or unicast.
+     * Dispatches the packet in the appropriate way - flood or unicast. This
+     * method does not block: data store lookups complete asynchronously and
+     * the packet is sent out once they do.
      *
      * @param payload
      *            The payload to be sent.
@@ -58,31 +67,60 @@ public class PacketDispatcher {
      *            The destination MacAddress of the packet.
      */
     public void dispatchPacket(byte[] payload, NodeConnectorRef ingress, MacAddress srcMac, MacAddress destMac) {
-        inventoryReader.readInventory();
-
         final var nodePath = getNodePath(ingress.getValue());
-        String nodeId = nodePath.firstKeyOf(Node.class).getId().getValue();
-        NodeConnectorRef srcConnectorRef = inventoryReader.getControllerSwitchConnectors().get(nodeId);
-
-        if (srcConnectorRef == null) {
-            refreshInventoryReader();
-            srcConnectorRef = inventoryReader.getControllerSwitchConnectors().get(nodeId);
-        }
-        NodeConnectorRef destNodeConnector = inventoryReader.getNodeConnector(nodePath, destMac);
+        final String nodeId = nodePath.firstKeyOf(Node.class).getId().getValue();
+        final NodeConnectorRef srcConnectorRef = inventoryReader.getControllerSwitchConnectors().get(nodeId);
         if (srcConnectorRef != null) {
-            if (destNodeConnector != null) {
-                sendPacketOut(payload, srcConnectorRef, destNodeConnector);
-            } else {
-                floodPacket(nodeId, payload, ingress, srcConnectorRef);
-            }
-        } else {
-            LOG.info("Cannot send packet out or flood as controller node connector is not available for node {}.",
-                    nodeId);
+            dispatchPacket(payload, ingress, destMac, nodePath, nodeId, srcConnectorRef);
+            return;
         }
+
+        // The node is not known yet, retry once the inventory has been refreshed
+        Futures.addCallback(inventoryReader.refreshInventory(), new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                final NodeConnectorRef refreshedConnectorRef =
+                    inventoryReader.getControllerSwitchConnectors().get(nodeId);
+                if (refreshedConnectorRef != null) {
+                    dispatchPacket(payload, ingress, destMac, nodePath, nodeId, refreshedConnectorRef);
+                } else {
+                    LOG.info("Cannot send packet out or flood as controller node connector is not available for "
+                        + "node {}.", nodeId);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                LOG.warn("Failed to refresh inventory while dispatching packet on node {}", nodeId, failure);
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void dispatchPacket(byte[] payload, NodeConnectorRef ingress, MacAddress destMac,
+            InstanceIdentifier<Node> nodePath, String nodeId, NodeConnectorRef srcConnectorRef) {
+        Futures.addCallback(inventoryReader.getNodeConnector(nodePath, destMac),
+            new FutureCallback<NodeConnectorRef>() {
+                @Override
+                public void onSuccess(NodeConnectorRef destNodeConnector) {
+                    if (destNodeConnector != null) {
+                        sendPacketOut(payload, srcConnectorRef, destNodeConnector);
+                    } else {
+                        floodPacket(nodeId, payload, ingress, srcConnectorRef);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    LOG.warn("Failed to look up {} on node {}, flooding the packet", destMac, nodeId, failure);
+                    floodPacket(nodeId, payload, ingress, srcConnectorRef);
+                }
+            }, MoreExecutors.directExecutor());
     }
 
     /**
-     * Floods the packet.
+     * Floods the packet. A single packet-out carrying an output action for
+     * each of the node's flood ports, except the ingress one, is sent to the
+     * switch.
      *
      * @param nodeId
      *            The node id
@@ -90,27 +128,72 @@ public class PacketDispatcher {
      *            The payload to be sent.
      * @param origIngress
      *            The NodeConnector where the payload came from.
+     * @param controllerNodeConnector
+     *            The NodeConnector between the controller and the switch.
      */
     public void floodPacket(String nodeId, byte[] payload, NodeConnectorRef origIngress,
             NodeConnectorRef controllerNodeConnector) {
+        final List<NodeConnectorId> floodPorts = inventoryReader.getSwitchFloodPorts().get(nodeId);
+        if (floodPorts != null) {
+            floodPacket(payload, origIngress, controllerNodeConnector, floodPorts);
+            return;
+        }
 
-        List<NodeConnectorRef> nodeConnectors = inventoryReader.getSwitchNodeConnectors().get(nodeId);
+        // The node is not known yet, retry once the inventory has been refreshed
+        Futures.addCallback(inventoryReader.refreshInventory(), new FutureCallback<Object>() {
+            @Override
+            public void onSuccess(Object result) {
+                final List<NodeConnectorId> refreshed = inventoryReader.getSwitchFloodPorts().get(nodeId);
+                if (refreshed != null) {
+                    floodPacket(payload, origIngress, controllerNodeConnector, refreshed);
+                } else {
+                    LOG.info("Cannot flood packets, as inventory doesn't have any node connectors for node {}",
+                        nodeId);
+                }
+            }
 
-        if (nodeConnectors == null) {
-            refreshInventoryReader();
-            nodeConnectors = inventoryReader.getSwitchNodeConnectors().get(nodeId);
-            if (nodeConnectors == null) {
-                LOG.info("Cannot flood packets, as inventory doesn't have any node connectors for node {}", nodeId);
-                return;
+            @Override
+            public void onFailure(Throwable failure) {
+                LOG.warn("Failed to refresh inventory while flooding packet on node {}", nodeId, failure);
             }
+        }, MoreExecutors.directExecutor());
+    }
+
+    private void floodPacket(byte[] payload, NodeConnectorRef origIngress, NodeConnectorRef controllerNodeConnector,
+            List<NodeConnectorId> floodPorts) {
+        if (origIngress == null || controllerNodeConnector == null) {
+            return;
         }
-        for (NodeConnectorRef ncRef : nodeConnectors) {
-            final var ncId = getNodeConnectorId(ncRef);
-            // Don't flood on discarding node connectors & origIngress
-            if (!ncId.equals(getNodeConnectorId(origIngress))) {
-                sendPacketOut(payload, origIngress, ncRef);
+
+        final NodeConnectorId ingressId = getNodeConnectorId(origIngress);
+        final List<Action> outputActions = new ArrayList<>(floodPorts.size());
+        int order = 0;
+        for (NodeConnectorId ncId : floodPorts) {
+            // Don't flood on origIngress, discarding node connectors are not flood ports
+            if (!ncId.equals(ingressId)) {
+                outputActions.add(new ActionBuilder()
+                    .setOrder(order++)
+                    .setAction(new OutputActionCaseBuilder()
+                        .setOutputAction(new OutputActionBuilder()
+                            .setMaxLength(Uint16.MAX_VALUE)
+                            .setOutputNodeConnector(ncId)
+                            .build())
+                        .build())
+                    .build());
             }
         }
+        if (outputActions.isEmpty()) {
+            return;
+        }
+
+        // The output actions take precedence over the egress, which is only required to be present
+        sendPacketOut(new TransmitPacketInputBuilder()
+            .setPayload(payload)
+            .setNode(new NodeRef(getNodePath(origIngress.getValue()).toIdentifier()))
+            .setEgress(controllerNodeConnector)
+            .setIngress(origIngress)
+            .setAction(BindingMap.ordered(outputActions))
+            .build());
     }
 
     private static NodeConnectorId getNodeConnectorId(NodeConnectorRef ncRef) {
@@ -136,13 +219,36 @@ public class PacketDispatcher {
             return;
         }
         InstanceIdentifier<Node> egressNodePath = getNodePath(egress.getValue());
-        TransmitPacketInput input = new TransmitPacketInputBuilder()
+        sendPacketOut(new TransmitPacketInputBuilder()
                 .setPayload(payload)
                 .setNode(new NodeRef(egressNodePath.toIdentifier()))
                 .setEgress(egress)
                 .setIngress(ingress)
-                .build();
+                .build());
+    }
+
+    /**
+     * Sends the specified packet out of the port it came from, as if it had
+     * been sent by the controller.
+     *
+     * @param payload
+     *            The payload to be sent.
+     * @param ingress
+     *            The NodeConnector where the packet being answered came from.
+     * @return false if the controller node connector of the switch is not
+     *         known yet and the packet could not be sent.
+     */
+    public boolean sendPacketBack(byte[] payload, NodeConnectorRef ingress) {
+        final NodeConnectorRef controllerConnectorRef =
+            inventoryReader.getControllerSwitchConnectors().get(getNodeId(ingress));
+        if (controllerConnectorRef == null) {
+            return false;
+        }
+        sendPacketOut(payload, controllerConnectorRef, ingress);
+        return true;
+    }
 
+    private void sendPacketOut(TransmitPacketInput input) {
         Futures.addCallback(transmitPacket.invoke(input), new FutureCallback<RpcResult<?>>() {
             @Override
             public void onSuccess(RpcResult<?> result) {
@@ -156,9 +262,8 @@ public class PacketDispatcher {
         }, MoreExecutors.directExecutor());
     }
 
-    private void refreshInventoryReader() {
-        inventoryReader.setRefreshData(true);
-        inventoryReader.readInventory();
+    static String getNodeId(final NodeConnectorRef nodeConnectorRef) {
+        return getNodePath(nodeConnectorRef.getValue()).firstKeyOf(Node.class).getId().getValue();
     }
 
     private static InstanceIdentifier<Node> getNodePath(final BindingInstanceIdentifier path) {
@@ -9,13 +9,19 @@ package org.opendaylight.l2switch.arphandler.flow;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.opendaylight.mdsal.binding.api.DataBroker;
 import org.opendaylight.mdsal.binding.api.DataTreeChangeListener;
@@ -75,14 +81,23 @@ import org.slf4j.LoggerFactory;
  * Adds a flow, which sends all ARP packets to the controller, on all switches.
  * Registers as ODL Inventory listener so that it can add flows once a new node i.e. switch is added
  */
-public class InitialFlowWriter implements DataTreeChangeListener<Node> {
+public class InitialFlowWriter implements DataTreeChangeListener<Node>, AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(InitialFlowWriter.class);
 
     private static final String FLOW_ID_PREFIX = "L2switch-";
     private static final EtherType ARP_ETHER_TYPE = new EtherType(Uint32.valueOf(KnownEtherType.Arp.getIntValue()));
 
-    private final ExecutorService initialFlowExecutor = Executors.newCachedThreadPool();
+    // AddFlow requests outstanding at any time, and attempts made for each node
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    // Releases the thread delivering data tree changes, flows are programmed asynchronously from here
+    private final ScheduledExecutorService initialFlowExecutor = Executors.newScheduledThreadPool(1);
+    // Nodes waiting for their initial flows, in arrival order, with the attempt to be made next
+    private final Map<InstanceIdentifier<Node>, Integer> pendingNodes = new LinkedHashMap<>();
     private final AddFlow addFlow;
+    private int inFlight;
     private Uint8 flowTableId = Uint8.ZERO;
     private Uint16 flowPriority = Uint16.ZERO;
     private Uint16 flowIdleTimeout = Uint16.ZERO;
@@ -142,15 +157,48 @@ public class InitialFlowWriter implements DataTreeChangeListener<Node> {
         }
     }
 
+    @Override
+    public void close() {
+        initialFlowExecutor.shutdownNow();
+    }
+
+    private synchronized void enqueue(InstanceIdentifier<Node> nodeId, int attempt) {
+        pendingNodes.putIfAbsent(nodeId, attempt);
+    }
+
+    /**
+     * Picks the next node to program, unless too many requests are outstanding already.
+     */
+    private synchronized Map.Entry<InstanceIdentifier<Node>, Integer> nextPendingNode() {
+        if (inFlight >= MAX_IN_FLIGHT || pendingNodes.isEmpty()) {
+            return null;
+        }
+        var it = pendingNodes.entrySet().iterator();
+        var next = it.next();
+        it.remove();
+        inFlight++;
+        return next;
+    }
+
+    private synchronized void requestCompleted() {
+        inFlight--;
+    }
+
     /**
      * A private class to process the node updated event in separate thread. Allows to release the
      * thread that invoked the data node updated event. Avoids any thread lock it may cause.
      */
     private class InitialFlowWriterProcessor implements Runnable {
         private final Set<InstanceIdentifier<Node>> nodeIds;
+        private final int attempt;
 
         InitialFlowWriterProcessor(final Set<InstanceIdentifier<Node>> nodeIds) {
+            this(nodeIds, 1);
+        }
+
+        InitialFlowWriterProcessor(final Set<InstanceIdentifier<Node>> nodeIds, final int attempt) {
             this.nodeIds = nodeIds;
+            this.attempt = attempt;
         }
 
         @Override
@@ -161,24 +209,71 @@ public class InitialFlowWriter implements DataTreeChangeListener<Node> {
 
             for (var nodeId : nodeIds) {
                 if (KeyedInstanceIdentifier.keyOf(nodeId).getId().getValue().contains("openflow:")) {
-                    addInitialFlows(nodeId);
+                    enqueue(nodeId, attempt);
                 }
             }
+
+            for (var next = nextPendingNode(); next != null; next = nextPendingNode()) {
+                addInitialFlows(next.getKey(), next.getValue());
+            }
         }
 
         /**
          * Adds a flow, which sends all ARP packets to the controller, to the specified node.
          * @param nodeId The node to write the flow on.
+         * @param nodeAttempt The number of this attempt, starting with 1.
          */
-        public void addInitialFlows(InstanceIdentifier<Node> nodeId) {
+        public void addInitialFlows(InstanceIdentifier<Node> nodeId, int nodeAttempt) {
             LOG.debug("adding initial flows for node {} ", nodeId);
 
             InstanceIdentifier<Table> tableId = getTableInstanceId(nodeId);
             InstanceIdentifier<Flow> flowId = getFlowInstanceId(tableId);
 
             //add arpToController flow
-            writeFlowToController(nodeId, tableId, flowId, createArpToControllerFlow(flowTableId, flowPriority));
-            LOG.debug("Added initial flows for node {} ", nodeId);
+            final ListenableFuture<RpcResult<AddFlowOutput>> result;
+            try {
+                result = writeFlowToController(nodeId, tableId, flowId,
+                    createArpToControllerFlow(flowTableId, flowPriority));
+            } catch (RuntimeException e) {
+                LOG.debug("Failed to add initial flows for node {}", nodeId, e);
+                initialFlowsDone(nodeId, nodeAttempt, false);
+                return;
+            }
+            Futures.addCallback(result, new FutureCallback<RpcResult<AddFlowOutput>>() {
+                @Override
+                public void onSuccess(RpcResult<AddFlowOutput> rpcResult) {
+                    if (rpcResult.isSuccessful()) {
+                        LOG.debug("Added initial flows for node {} ", nodeId);
+                        initialFlowsDone(nodeId, nodeAttempt, true);
+                    } else {
+                        LOG.debug("Failed to add initial flows for node {}: {}", nodeId, rpcResult.getErrors());
+                        initialFlowsDone(nodeId, nodeAttempt, false);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable failure) {
+                    LOG.debug("Failed to add initial flows for node {}", nodeId, failure);
+                    initialFlowsDone(nodeId, nodeAttempt, false);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        private void initialFlowsDone(InstanceIdentifier<Node> nodeId, int nodeAttempt, boolean success) {
+            requestCompleted();
+            if (initialFlowExecutor.isShutdown()) {
+                return;
+            }
+            if (!success) {
+                if (nodeAttempt < MAX_ATTEMPTS) {
+                    initialFlowExecutor.schedule(new InitialFlowWriterProcessor(Set.of(nodeId), nodeAttempt + 1),
+                        RETRY_DELAY_MILLIS * nodeAttempt, TimeUnit.MILLISECONDS);
+                } else {
+                    LOG.warn("Giving up adding initial flows for node {} after {} attempts", nodeId, nodeAttempt);
+                }
+            }
+            // A slot is free again, let the next pending node through
+            initialFlowExecutor.execute(new InitialFlowWriterProcessor(Set.of()));
         }
 
         private InstanceIdentifier<Table> getTableInstanceId(InstanceIdentifier<Node> nodeId) {
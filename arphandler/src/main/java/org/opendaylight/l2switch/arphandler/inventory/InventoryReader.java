@@ -7,17 +7,23 @@
  */
 package org.opendaylight.l2switch.arphandler.inventory;
 
-import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.ListeningScheduledExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.opendaylight.mdsal.binding.api.DataBroker;
 import org.opendaylight.mdsal.binding.api.DataTreeChangeListener;
 import org.opendaylight.mdsal.binding.api.DataTreeIdentifier;
@@ -52,15 +58,19 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
     private final DataBroker dataService;
     // Key: SwitchId, Value: NodeConnectorRef that corresponds to NC between
     // controller & switch
-    private final HashMap<String, NodeConnectorRef> controllerSwitchConnectors;
+    private final Map<String, NodeConnectorRef> controllerSwitchConnectors;
     // Key: SwitchId, Value: List of node connectors on this switch
-    private final HashMap<String, List<NodeConnectorRef>> switchNodeConnectors;
+    private final Map<String, List<NodeConnectorRef>> switchNodeConnectors;
+    // Key: SwitchId, Value: Ids of the node connectors a packet is flooded to on this switch
+    private final Map<String, List<NodeConnectorId>> switchFloodPorts;
     private final List<Registration> listenerRegistrationList = new CopyOnWriteArrayList<>();
 
     private volatile boolean refreshData = false;
     private static final long REFRESH_DATA_DELAY = 20L;
     private volatile boolean refreshDataScheduled = false;
-    private final ScheduledExecutorService nodeConnectorDataChangeEventProcessor = Executors.newScheduledThreadPool(1);
+    private final ListeningScheduledExecutorService nodeConnectorDataChangeEventProcessor =
+        MoreExecutors.listeningDecorator(Executors.newScheduledThreadPool(1));
+    private final AtomicReference<ListenableFuture<?>> pendingRefresh = new AtomicReference<>();
 
     /**
      * Construct an InventoryService object with the specified inputs.
@@ -70,8 +80,9 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
      */
     public InventoryReader(DataBroker dataService) {
         this.dataService = dataService;
-        controllerSwitchConnectors = new HashMap<>();
-        switchNodeConnectors = new HashMap<>();
+        controllerSwitchConnectors = new ConcurrentHashMap<>();
+        switchNodeConnectors = new ConcurrentHashMap<>();
+        switchFloodPorts = new ConcurrentHashMap<>();
     }
 
     public void setRefreshData(boolean refreshData) {
@@ -98,21 +109,30 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
     }
 
 
-    public HashMap<String, NodeConnectorRef> getControllerSwitchConnectors() {
+    public Map<String, NodeConnectorRef> getControllerSwitchConnectors() {
         return controllerSwitchConnectors;
     }
 
-    public HashMap<String, List<NodeConnectorRef>> getSwitchNodeConnectors() {
+    public Map<String, List<NodeConnectorRef>> getSwitchNodeConnectors() {
         return switchNodeConnectors;
     }
 
+    public Map<String, List<NodeConnectorId>> getSwitchFloodPorts() {
+        return switchFloodPorts;
+    }
+
     @Override
     public void onDataTreeChanged(List<DataTreeModification<DataObject>> changes) {
         if (!refreshDataScheduled) {
             synchronized (this) {
                 if (!refreshDataScheduled) {
-                    nodeConnectorDataChangeEventProcessor.schedule(new NodeConnectorDataChangeEventProcessor(),
-                            REFRESH_DATA_DELAY, TimeUnit.MILLISECONDS);
+                    try {
+                        nodeConnectorDataChangeEventProcessor.schedule(new NodeConnectorDataChangeEventProcessor(),
+                                REFRESH_DATA_DELAY, TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        LOG.debug("Inventory reader closed, ignoring inventory change", e);
+                        return;
+                    }
                     refreshDataScheduled = true;
                 }
             }
@@ -122,6 +142,43 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
 
     public void close() {
         listenerRegistrationList.forEach(Registration::close);
+        nodeConnectorDataChangeEventProcessor.shutdownNow();
+    }
+
+    /**
+     * Asynchronously re-read the Inventory data tree. The read is executed on
+     * the inventory processing thread, hence callers, such as notification
+     * listeners, never block on the data store. Concurrent requests are
+     * coalesced into a single read.
+     *
+     * @return a future which completes once the switch and node connector
+     *         maps have been refreshed, or at once if this reader has been
+     *         closed.
+     */
+    public ListenableFuture<?> refreshInventory() {
+        while (true) {
+            final var pending = pendingRefresh.get();
+            if (pending != null && !pending.isDone()) {
+                return pending;
+            }
+
+            final var refresh = ListenableFutureTask.create(() -> {
+                setRefreshData(true);
+                readInventory();
+            }, null);
+            // Only the caller installing the refresh schedules it, the others return it above
+            if (pendingRefresh.compareAndSet(pending, refresh)) {
+                try {
+                    nodeConnectorDataChangeEventProcessor.execute(refresh);
+                } catch (RejectedExecutionException e) {
+                    // Closed, packets still in flight are dispatched with the maps as they are
+                    LOG.debug("Inventory reader closed, not refreshing the inventory", e);
+                    refresh.cancel(false);
+                    return Futures.immediateVoidFuture();
+                }
+                return refresh;
+            }
+        }
     }
 
     /**
@@ -154,10 +211,12 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
                 throw new RuntimeException("Failed to read nodes from Operation data store.", e);
             }
 
+            final Set<String> nodeIds = new HashSet<>();
             if (nodes != null) {
                 // Get NodeConnectors for each node
                 for (Node node : nodes.nonnullNode().values()) {
                     ArrayList<NodeConnectorRef> nodeConnectorRefs = new ArrayList<>();
+                    ArrayList<NodeConnectorId> floodPorts = new ArrayList<>();
                     for (NodeConnector nodeConnector : node.nonnullNodeConnector().values()) {
                         // Read STP status for this NodeConnector
                         StpStatusAwareNodeConnector saNodeConnector = nodeConnector
@@ -173,9 +232,11 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
                             .child(NodeConnector.class, nodeConnector.key())
                             .build());
                         nodeConnectorRefs.add(ncRef);
+                        floodPorts.add(nodeConnector.getId());
                     }
 
                     switchNodeConnectors.put(node.getId().getValue(), nodeConnectorRefs);
+                    switchFloodPorts.put(node.getId().getValue(), List.copyOf(floodPorts));
                     NodeConnectorRef ncRef = new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
                             .child(Node.class, node.key())
                             .child(NodeConnector.class,
@@ -183,9 +244,15 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
                             .build());
                     LOG.debug("Local port for node {} is {}", node.key(), ncRef);
                     controllerSwitchConnectors.put(node.getId().getValue(), ncRef);
+                    nodeIds.add(node.getId().getValue());
                 }
             }
 
+            // Drop switches which have disappeared, the others have been overwritten above
+            switchNodeConnectors.keySet().retainAll(nodeIds);
+            switchFloodPorts.keySet().retainAll(nodeIds);
+            controllerSwitchConnectors.keySet().retainAll(nodeIds);
+
             refreshData = false;
 
             if (listenerRegistrationList.isEmpty()) {
@@ -196,41 +263,31 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
 
     /**
      * Get the NodeConnector on the specified node with the specified MacAddress
-     * observation.
+     * observation. The data store is read asynchronously.
      *
      * @param nodeInsId
      *            InstanceIdentifier for the node on which to search for.
      * @param macAddress
      *            MacAddress to be searched for.
-     * @return NodeConnectorRef that pertains to the NodeConnector containing
-     *         the MacAddress observation.
+     * @return a future NodeConnectorRef that pertains to the NodeConnector
+     *         containing the MacAddress observation, or null if there is none.
      */
-    public NodeConnectorRef getNodeConnector(InstanceIdentifier<Node> nodeInsId, MacAddress macAddress) {
+    public ListenableFuture<NodeConnectorRef> getNodeConnector(InstanceIdentifier<Node> nodeInsId,
+            MacAddress macAddress) {
         if (nodeInsId == null || macAddress == null) {
-            return null;
+            return Futures.immediateFuture(null);
         }
 
-        final FluentFuture<Optional<Node>> readFuture;
         try (ReadTransaction readOnlyTransaction = dataService.newReadOnlyTransaction()) {
-            readFuture = readOnlyTransaction.read(LogicalDatastoreType.OPERATIONAL, nodeInsId.toIdentifier());
-        }
-
-        final Optional<Node> dataObjectOptional;
-        try {
-            dataObjectOptional = readFuture.get();
-        } catch (InterruptedException e) {
-            LOG.error("Failed to read nodes from Operation data store.");
-            throw new RuntimeException("Failed to read nodes from Operation data store.", e);
-        } catch (ExecutionException e) {
-            LOG.error("Failed to read nodes from Operation data store.");
-            throw new RuntimeException("Failed to read nodes from Operation data store.", e);
-        }
-
-        if (dataObjectOptional.isEmpty()) {
-            return null;
+            return readOnlyTransaction.read(LogicalDatastoreType.OPERATIONAL, nodeInsId.toIdentifier())
+                .transform(optionalNode -> optionalNode
+                    .map(node -> findNodeConnector(nodeInsId, node, macAddress))
+                    .orElse(null), MoreExecutors.directExecutor());
         }
+    }
 
-        final Node node = dataObjectOptional.orElseThrow();
+    private static NodeConnectorRef findNodeConnector(InstanceIdentifier<Node> nodeInsId, Node node,
+            MacAddress macAddress) {
         final Map<NodeConnectorKey, NodeConnector> connectors = node.getNodeConnector();
         if (connectors == null) {
             LOG.debug("Node connectors data is not present for node {}", node.getId());
@@ -270,8 +327,6 @@ public class InventoryReader implements DataTreeChangeListener<DataObject> {
 
         @Override
         public void run() {
-            controllerSwitchConnectors.clear();
-            switchNodeConnectors.clear();
             refreshDataScheduled = false;
             setRefreshData(true);
             readInventory();
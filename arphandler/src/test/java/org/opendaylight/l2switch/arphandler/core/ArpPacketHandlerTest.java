@@ -7,6 +7,7 @@
  */
 package org.opendaylight.l2switch.arphandler.core;
 
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -28,6 +29,8 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.e
 class ArpPacketHandlerTest {
     @Mock
     private PacketDispatcher packetDispatcher;
+    @Mock
+    private ArpResponder arpResponder;
     private ArpPacketHandler arpPacketHandler;
 
     @BeforeEach
@@ -48,6 +51,23 @@ class ArpPacketHandlerTest {
         verify(packetDispatcher, times(1)).dispatchPacket(null, null, null, null);
     }
 
+    @Test
+    void onArpPacketReceivedTest_Answered() throws Exception {
+        final var ethernetPacket = new EthernetPacketBuilder().build();
+        final var arpPacket = new ArpPacketBuilder().build();
+        doReturn(true).when(arpResponder).respond(null, null, ethernetPacket, arpPacket);
+
+        new ArpPacketHandler(packetDispatcher, arpResponder, null).onNotification(new ArpPacketReceivedBuilder()
+            .setPacketChain(List.of(
+                new PacketChainBuilder()
+                    .setPacket(new RawPacketBuilder().setRawPacketFields(new RawPacketFieldsBuilder().build()).build())
+                .build(),
+                new PacketChainBuilder().setPacket(ethernetPacket).build(),
+                new PacketChainBuilder().setPacket(arpPacket).build()))
+            .build());
+        verifyNoInteractions(packetDispatcher);
+    }
+
     @Test
     void onArpPacketReceivedTest_NullInput() throws Exception {
         arpPacketHandler.onNotification(null);
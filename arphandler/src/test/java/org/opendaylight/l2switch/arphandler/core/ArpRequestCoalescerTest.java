@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.arphandler.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.KnownOperation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacketBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.KnownEtherType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacketBuilder;
+import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+import org.opendaylight.yangtools.yang.common.Uint32;
+import org.opendaylight.yangtools.yang.common.Uint8;
+
+@ExtendWith(MockitoExtension.class)
+class ArpRequestCoalescerTest {
+    private static final EthernetPacket ETHERNET_PACKET = new EthernetPacketBuilder()
+        .setPayloadOffset(Uint32.valueOf(14))
+        .build();
+
+    @Mock
+    private PacketDispatcher packetDispatcher;
+    @Captor
+    private ArgumentCaptor<byte[]> reply;
+
+    private ArpRequestCoalescer requestCoalescer;
+
+    @BeforeEach
+    void beforeEach() {
+        requestCoalescer = new ArpRequestCoalescer(packetDispatcher, 600000);
+    }
+
+    @AfterEach
+    void afterEach() {
+        requestCoalescer.close();
+    }
+
+    @Test
+    void testCoalesce_RepeatedRequests() {
+        assertFalse(coalesce(request(1, 3), ingress("openflow:1", 1), KnownOperation.Request, 1, 3));
+        assertTrue(coalesce(request(2, 3), ingress("openflow:1", 2), KnownOperation.Request, 2, 3));
+        assertTrue(coalesce(request(1, 3), ingress("openflow:1", 1), KnownOperation.Request, 1, 3));
+        // Other switches and targets are looked for independently
+        assertFalse(coalesce(request(1, 3), ingress("openflow:2", 1), KnownOperation.Request, 1, 3));
+        assertFalse(coalesce(request(1, 4), ingress("openflow:1", 1), KnownOperation.Request, 1, 4));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    @Test
+    void testCoalesce_Reply() {
+        assertFalse(coalesce(request(1, 3), ingress("openflow:1", 1), KnownOperation.Request, 1, 3));
+        assertTrue(coalesce(request(2, 3), ingress("openflow:1", 2), KnownOperation.Request, 2, 3));
+
+        // The reply to the dispatched request is dispatched as well and copied to the held back requester
+        assertFalse(coalesce(reply(3, 1), ingress("openflow:1", 3), KnownOperation.Reply, 3, 1));
+        verify(packetDispatcher).sendPacketBack(reply.capture(), eq(ingress("openflow:1", 2)));
+        assertArrayEquals(reply(3, 2), reply.getValue());
+
+        // The window is closed by the reply
+        assertFalse(coalesce(request(2, 3), ingress("openflow:1", 2), KnownOperation.Request, 2, 3));
+    }
+
+    @Test
+    void testCoalesce_TooManyRequesters() {
+        for (int sender = 1; sender <= 256; sender++) {
+            assertEquals(sender > 1, coalesce(wideRequest(sender, 0), ingress("openflow:1", 1),
+                KnownOperation.Request, sender, 0));
+        }
+        // No room left to remember the sender, the request is not held back
+        assertFalse(coalesce(wideRequest(257, 0), ingress("openflow:1", 1), KnownOperation.Request, 257, 0));
+        // A remembered sender still is
+        assertTrue(coalesce(wideRequest(2, 0), ingress("openflow:1", 1), KnownOperation.Request, 2, 0));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    @Test
+    void testCoalesce_Gratuitous() {
+        assertFalse(coalesce(request(3, 3), ingress("openflow:1", 3), KnownOperation.Request, 3, 3));
+        assertFalse(coalesce(request(3, 3), ingress("openflow:1", 3), KnownOperation.Request, 3, 3));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    private boolean coalesce(byte[] payload, NodeConnectorRef ingress, KnownOperation operation, int sender,
+            int target) {
+        final ArpPacket arpPacket = new ArpPacketBuilder()
+            .setProtocolType(KnownEtherType.Ipv4)
+            .setHardwareLength(Uint8.valueOf(6))
+            .setProtocolLength(Uint8.valueOf(4))
+            .setOperation(operation)
+            .setSourceProtocolAddress("10.0.0." + sender)
+            .setDestinationProtocolAddress("10.0.0." + target)
+            .build();
+        return requestCoalescer.coalesce(payload, ingress, ETHERNET_PACKET, arpPacket);
+    }
+
+    private static NodeConnectorRef ingress(String nodeId, int port) {
+        return new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId(nodeId)))
+            .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId(nodeId + ":" + port)))
+            .build());
+    }
+
+    /**
+     * An untagged ARP request from host 10.0.0.{sender}, with MAC address
+     * 00:00:00:00:00:{sender}, for 10.0.0.{target}.
+     */
+    private static byte[] request(int sender, int target) {
+        return new byte[] {
+            -1, -1, -1, -1, -1, -1, 0, 0, 0, 0, 0, (byte) sender, 0x08, 0x06,
+            0, 1, 0x08, 0, 6, 4, 0, 1,
+            0, 0, 0, 0, 0, (byte) sender, 10, 0, 0, (byte) sender,
+            0, 0, 0, 0, 0, 0, 10, 0, 0, (byte) target
+        };
+    }
+
+    /**
+     * An ARP request like {@link #request(int, int)}, with the next to last
+     * byte of the sender addresses set as well, for more than 255 senders.
+     */
+    private static byte[] wideRequest(int sender, int target) {
+        final byte[] request = request(sender, target);
+        request[10] = (byte) (sender >> 8);
+        request[26] = (byte) (sender >> 8);
+        request[30] = (byte) (sender >> 8);
+        return request;
+    }
+
+    /**
+     * The ARP reply of host 10.0.0.{sender}, with MAC address
+     * 00:00:00:00:00:{sender}, to 10.0.0.{target}.
+     */
+    private static byte[] reply(int sender, int target) {
+        return new byte[] {
+            0, 0, 0, 0, 0, (byte) target, 0, 0, 0, 0, 0, (byte) sender, 0x08, 0x06,
+            0, 1, 0x08, 0, 6, 4, 0, 2,
+            0, 0, 0, 0, 0, (byte) sender, 10, 0, 0, (byte) sender,
+            0, 0, 0, 0, 0, (byte) target, 10, 0, 0, (byte) target
+        };
+    }
+}
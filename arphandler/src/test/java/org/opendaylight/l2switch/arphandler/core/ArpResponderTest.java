@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2014 Cisco Systems, Inc. and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.arphandler.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opendaylight.mdsal.binding.api.DataObjectModification;
+import org.opendaylight.mdsal.binding.api.DataObjectModification.ModificationType;
+import org.opendaylight.mdsal.binding.api.DataTreeModification;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorRef;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.KnownOperation;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.arp.rev140528.arp.packet.received.packet.chain.packet.ArpPacketBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.KnownEtherType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.ethernet.rev140528.ethernet.packet.received.packet.chain.packet.EthernetPacketBuilder;
+import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+import org.opendaylight.yangtools.yang.common.Uint32;
+import org.opendaylight.yangtools.yang.common.Uint64;
+import org.opendaylight.yangtools.yang.common.Uint8;
+
+@ExtendWith(MockitoExtension.class)
+class ArpResponderTest {
+    private static final NodeConnectorRef INGRESS = new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+        .child(Node.class, new NodeKey(new NodeId("openflow:1")))
+        .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("openflow:1:1")))
+        .build());
+    private static final EthernetPacket ETHERNET_PACKET = new EthernetPacketBuilder()
+        .setPayloadOffset(Uint32.valueOf(14))
+        .build();
+
+    @Mock
+    private PacketDispatcher packetDispatcher;
+    @Mock
+    private DataTreeModification<Addresses> change;
+    @Mock
+    private DataObjectModification<Addresses> rootNode;
+    @Captor
+    private ArgumentCaptor<byte[]> reply;
+
+    private ArpResponder arpResponder;
+
+    @AfterEach
+    void afterEach() {
+        arpResponder.close();
+    }
+
+    @Test
+    void testRespond_UnknownTarget() {
+        arpResponder = new ArpResponder(packetDispatcher, 600000);
+        assertFalse(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    @Test
+    void testRespond_NotLearnedFromArp() {
+        arpResponder = new ArpResponder(packetDispatcher, 600000);
+
+        // 10.0.0.2 asking for 10.0.0.3 does not teach the responder where 10.0.0.2 is
+        assertFalse(respond(request(2, 3), "10.0.0.2", "10.0.0.3"));
+        assertFalse(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    @Test
+    void testRespond_RefreshedFromArp() {
+        arpResponder = new ArpResponder(packetDispatcher, 1000);
+        doReturn(true).when(packetDispatcher).sendPacketBack(any(), eq(INGRESS));
+        addressesChanged(ModificationType.WRITE, System.currentTimeMillis() - 5000);
+
+        // The request of the host itself keeps its binding in use
+        assertFalse(respond(request(2, 4), "10.0.0.2", "10.0.0.4"));
+        assertTrue(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verify(packetDispatcher).sendPacketBack(reply.capture(), eq(INGRESS));
+        assertArrayEquals(reply(2, 1), reply.getValue());
+    }
+
+    @Test
+    void testRespond_Spoofed() {
+        arpResponder = new ArpResponder(packetDispatcher, 600000);
+        doReturn(true).when(packetDispatcher).sendPacketBack(any(), eq(INGRESS));
+        addressesChanged(ModificationType.WRITE, System.currentTimeMillis());
+
+        // 00:00:00:00:00:03 claiming 10.0.0.2 does not change the replies
+        assertFalse(respond(request(3, 4), "10.0.0.2", "10.0.0.4"));
+        assertTrue(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verify(packetDispatcher).sendPacketBack(reply.capture(), eq(INGRESS));
+        assertArrayEquals(reply(2, 1), reply.getValue());
+    }
+
+    @Test
+    void testRespond_LearnedFromAddressTracker() {
+        arpResponder = new ArpResponder(packetDispatcher, 600000);
+        doReturn(true).when(packetDispatcher).sendPacketBack(any(), eq(INGRESS));
+        addressesChanged(ModificationType.WRITE, System.currentTimeMillis());
+
+        assertTrue(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verify(packetDispatcher).sendPacketBack(reply.capture(), eq(INGRESS));
+        assertArrayEquals(reply(2, 1), reply.getValue());
+    }
+
+    @Test
+    void testRespond_Expired() {
+        arpResponder = new ArpResponder(packetDispatcher, 1000);
+        addressesChanged(ModificationType.WRITE, System.currentTimeMillis() - 5000);
+
+        assertFalse(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    @Test
+    void testRespond_NoMaxAge() {
+        arpResponder = new ArpResponder(packetDispatcher, 0);
+        doReturn(true).when(packetDispatcher).sendPacketBack(any(), eq(INGRESS));
+        addressesChanged(ModificationType.WRITE, System.currentTimeMillis() - 5000);
+
+        assertTrue(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verify(packetDispatcher).sendPacketBack(reply.capture(), eq(INGRESS));
+        assertArrayEquals(reply(2, 1), reply.getValue());
+    }
+
+    @Test
+    void testRespond_Deleted() {
+        arpResponder = new ArpResponder(packetDispatcher, 600000);
+        addressesChanged(ModificationType.WRITE, System.currentTimeMillis());
+        addressesChanged(ModificationType.DELETE, System.currentTimeMillis());
+
+        assertFalse(respond(request(1, 2), "10.0.0.1", "10.0.0.2"));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    @Test
+    void testRespond_Gratuitous() {
+        arpResponder = new ArpResponder(packetDispatcher, 600000);
+        addressesChanged(ModificationType.WRITE, System.currentTimeMillis());
+
+        assertFalse(respond(request(2, 2), "10.0.0.2", "10.0.0.2"));
+        verifyNoInteractions(packetDispatcher);
+    }
+
+    private boolean respond(byte[] payload, String senderIp, String targetIp) {
+        final ArpPacket arpPacket = new ArpPacketBuilder()
+            .setProtocolType(KnownEtherType.Ipv4)
+            .setHardwareLength(Uint8.valueOf(6))
+            .setProtocolLength(Uint8.valueOf(4))
+            .setOperation(KnownOperation.Request)
+            .setSourceProtocolAddress(senderIp)
+            .setDestinationProtocolAddress(targetIp)
+            .build();
+        return arpResponder.respond(payload, INGRESS, ETHERNET_PACKET, arpPacket);
+    }
+
+    private void addressesChanged(ModificationType type, long lastSeen) {
+        final Addresses addresses = new AddressesBuilder()
+            .setId(Uint64.ONE)
+            .setIp(new IpAddress(new Ipv4Address("10.0.0.2")))
+            .setMac(new MacAddress("00:00:00:00:00:02"))
+            .setLastSeen(lastSeen)
+            .build();
+        doReturn(rootNode).when(change).getRootNode();
+        doReturn(type).when(rootNode).modificationType();
+        if (type == ModificationType.DELETE) {
+            doReturn(addresses).when(rootNode).dataBefore();
+        } else {
+            doReturn(addresses).when(rootNode).dataAfter();
+        }
+        arpResponder.onDataTreeChanged(List.of(change));
+    }
+
+    /**
+     * An untagged ARP request from host 10.0.0.{sender}, with MAC address
+     * 00:00:00:00:00:{sender}, for 10.0.0.{target}.
+     */
+    private static byte[] request(int sender, int target) {
+        return new byte[] {
+            -1, -1, -1, -1, -1, -1, 0, 0, 0, 0, 0, (byte) sender, 0x08, 0x06,
+            0, 1, 0x08, 0, 6, 4, 0, 1,
+            0, 0, 0, 0, 0, (byte) sender, 10, 0, 0, (byte) sender,
+            0, 0, 0, 0, 0, 0, 10, 0, 0, (byte) target
+        };
+    }
+
+    /**
+     * The ARP reply of host 10.0.0.{sender}, with MAC address
+     * 00:00:00:00:00:{sender}, to 10.0.0.{target}.
+     */
+    private static byte[] reply(int sender, int target) {
+        return new byte[] {
+            0, 0, 0, 0, 0, (byte) target, 0, 0, 0, 0, 0, (byte) sender, 0x08, 0x06,
+            0, 1, 0x08, 0, 6, 4, 0, 2,
+            0, 0, 0, 0, 0, (byte) sender, 10, 0, 0, (byte) sender,
+            0, 0, 0, 0, 0, (byte) target, 10, 0, 0, (byte) target
+        };
+    }
+}
@@ -7,18 +7,23 @@
  */
 package org.opendaylight.l2switch.arphandler.core;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.ArrayList;
+import com.google.common.util.concurrent.Futures;
 import java.util.HashMap;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.opendaylight.l2switch.arphandler.inventory.InventoryReader;
@@ -31,6 +36,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.No
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.TransmitPacket;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.packet.service.rev130709.TransmitPacketInput;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
 import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 
@@ -43,7 +49,9 @@ class PacketDispatcherTest {
     @Mock
     private HashMap<String, NodeConnectorRef> controllerSwitchConnectors;
     @Mock
-    private HashMap<String, List<NodeConnectorRef>> switchNodeConnectors;
+    private HashMap<String, List<NodeConnectorId>> switchFloodPorts;
+    @Captor
+    private ArgumentCaptor<TransmitPacketInput> transmitPacketInput;
 
     private PacketDispatcher packetDispatcher;
 
@@ -83,38 +91,64 @@ class PacketDispatcherTest {
     }
 
     @Test
-    void testFloodPacket() {
+    void testSendPacketBack() {
         doReturn(RpcResultBuilder.success().buildFuture()).when(transmitPacket).invoke(any());
+        final var controllerRef = new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId("abc")))
+            .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("LOCAL")))
+            .build());
+        when(controllerSwitchConnectors.get("abc")).thenReturn(controllerRef);
+        when(inventoryReader.getControllerSwitchConnectors()).thenReturn(controllerSwitchConnectors);
 
-        var nodeConnectors = new ArrayList<NodeConnectorRef>();
-        var ncInsId1 = DataObjectIdentifier.builder(Nodes.class)
+        final var ingress = new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
             .child(Node.class, new NodeKey(new NodeId("abc")))
             .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("1")))
-            .build();
+            .build());
+        assertTrue(packetDispatcher.sendPacketBack(null, ingress));
+        verify(transmitPacket, times(1)).invoke(transmitPacketInput.capture());
+        assertEquals(ingress, transmitPacketInput.getValue().getEgress());
+        assertEquals(controllerRef, transmitPacketInput.getValue().getIngress());
+    }
+
+    @Test
+    void testSendPacketBack_UnknownNode() {
+        when(inventoryReader.getControllerSwitchConnectors()).thenReturn(controllerSwitchConnectors);
+
+        assertFalse(packetDispatcher.sendPacketBack(null, new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId("abc")))
+            .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("1")))
+            .build())));
+        verify(transmitPacket, times(0)).invoke(any());
+    }
+
+    @Test
+    void testFloodPacket() {
+        doReturn(RpcResultBuilder.success().buildFuture()).when(transmitPacket).invoke(any());
+
         var ncInsId2 = DataObjectIdentifier.builder(Nodes.class)
             .child(Node.class, new NodeKey(new NodeId("abc")))
             .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("2")))
             .build();
-        nodeConnectors.add(new NodeConnectorRef(ncInsId1));
-        nodeConnectors.add(new NodeConnectorRef(ncInsId1));
-        nodeConnectors.add(new NodeConnectorRef(ncInsId2));
-        when(switchNodeConnectors.get(any(String.class))).thenReturn(nodeConnectors);
-        when(inventoryReader.getSwitchNodeConnectors()).thenReturn(switchNodeConnectors);
+        when(switchFloodPorts.get(any(String.class))).thenReturn(List.of(
+            new NodeConnectorId("1"), new NodeConnectorId("3"), new NodeConnectorId("2")));
+        when(inventoryReader.getSwitchFloodPorts()).thenReturn(switchFloodPorts);
 
         packetDispatcher.floodPacket("", null, new NodeConnectorRef(ncInsId2),
                 new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
                     .child(Node.class, new NodeKey(new NodeId("abc")))
                     .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("def")))
                     .build()));
-        verify(inventoryReader, times(0)).setRefreshData(true);
-        verify(inventoryReader, times(0)).readInventory();
-        verify(transmitPacket, times(2)).invoke(any());
+        verify(inventoryReader, times(0)).refreshInventory();
+        // A single packet-out to every port but the ingress one
+        verify(transmitPacket, times(1)).invoke(transmitPacketInput.capture());
+        assertEquals(2, transmitPacketInput.getValue().nonnullAction().size());
     }
 
     @Test
     void testFloodPacket_NullList() {
-        when(switchNodeConnectors.get(any(String.class))).thenReturn(null);
-        when(inventoryReader.getSwitchNodeConnectors()).thenReturn(switchNodeConnectors);
+        when(switchFloodPorts.get(any(String.class))).thenReturn(null);
+        when(inventoryReader.getSwitchFloodPorts()).thenReturn(switchFloodPorts);
+        doReturn(Futures.immediateVoidFuture()).when(inventoryReader).refreshInventory();
 
         packetDispatcher.floodPacket("", null,
             new NodeConnectorRef(DataObjectIdentifier.builder(Nodes.class)
@@ -125,8 +159,7 @@ class PacketDispatcherTest {
                 .child(Node.class, new NodeKey(new NodeId("abc")))
                 .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("def")))
                 .build()));
-        verify(inventoryReader, times(1)).setRefreshData(true);
-        verify(inventoryReader, times(1)).readInventory();
+        verify(inventoryReader, times(1)).refreshInventory();
         verify(transmitPacket, times(0)).invoke(any());
     }
 
@@ -137,10 +170,11 @@ class PacketDispatcherTest {
                 .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("1"))).build();
         when(controllerSwitchConnectors.get(any(String.class))).thenReturn(null);
         when(inventoryReader.getControllerSwitchConnectors()).thenReturn(controllerSwitchConnectors);
+        doReturn(Futures.immediateVoidFuture()).when(inventoryReader).refreshInventory();
 
         packetDispatcher.dispatchPacket(null, new NodeConnectorRef(ncInsId), null, null);
-        verify(inventoryReader, times(2)).readInventory();
-        verify(inventoryReader, times(1)).setRefreshData(true);
+        verify(inventoryReader, times(1)).refreshInventory();
+        verify(inventoryReader, times(0)).getNodeConnector(any(), any());
         verify(transmitPacket, times(0)).invoke(any());
     }
 
@@ -154,11 +188,10 @@ class PacketDispatcherTest {
         var ncRef1 = new NodeConnectorRef(ncInsId1);
         when(controllerSwitchConnectors.get(any(String.class))).thenReturn(ncRef1);
         when(inventoryReader.getControllerSwitchConnectors()).thenReturn(controllerSwitchConnectors);
-        when(inventoryReader.getNodeConnector(any(), any())).thenReturn(ncRef1);
+        when(inventoryReader.getNodeConnector(any(), any())).thenReturn(Futures.immediateFuture(ncRef1));
 
         packetDispatcher.dispatchPacket(null, new NodeConnectorRef(ncInsId1), null, null);
-        verify(inventoryReader, times(1)).readInventory();
-        verify(inventoryReader, times(0)).setRefreshData(true);
+        verify(inventoryReader, times(0)).refreshInventory();
         verify(transmitPacket, times(1)).invoke(any());
     }
 
@@ -172,21 +205,18 @@ class PacketDispatcherTest {
         var ncRef1 = new NodeConnectorRef(ncInsId1);
         when(controllerSwitchConnectors.get(any(String.class))).thenReturn(ncRef1);
         when(inventoryReader.getControllerSwitchConnectors()).thenReturn(controllerSwitchConnectors);
-        when(inventoryReader.getNodeConnector(any(), any())).thenReturn(null);
+        when(inventoryReader.getNodeConnector(any(), any())).thenReturn(Futures.immediateFuture(null));
 
-        var nodeConnectors = new ArrayList<NodeConnectorRef>();
         var ncInsId2 = DataObjectIdentifier.builder(Nodes.class)
                 .child(Node.class, new NodeKey(new NodeId("2")))
                 .child(NodeConnector.class, new NodeConnectorKey(new NodeConnectorId("2"))).build();
-        nodeConnectors.add(new NodeConnectorRef(ncInsId1));
-        nodeConnectors.add(new NodeConnectorRef(ncInsId1));
-        nodeConnectors.add(new NodeConnectorRef(ncInsId2));
-        when(switchNodeConnectors.get(any(String.class))).thenReturn(nodeConnectors);
-        when(inventoryReader.getSwitchNodeConnectors()).thenReturn(switchNodeConnectors);
+        when(switchFloodPorts.get(any(String.class))).thenReturn(List.of(
+            new NodeConnectorId("1"), new NodeConnectorId("3"), new NodeConnectorId("2")));
+        when(inventoryReader.getSwitchFloodPorts()).thenReturn(switchFloodPorts);
 
         packetDispatcher.dispatchPacket(null, new NodeConnectorRef(ncInsId2), null, null);
-        verify(inventoryReader, times(1)).readInventory();
-        verify(inventoryReader, times(0)).setRefreshData(true);
-        verify(transmitPacket, times(2)).invoke(any());
+        verify(inventoryReader, times(0)).refreshInventory();
+        verify(transmitPacket, times(1)).invoke(transmitPacketInput.capture());
+        assertEquals(2, transmitPacketInput.getValue().nonnullAction().size());
     }
 }
@@ -8,6 +8,7 @@
 package org.opendaylight.l2switch.arphandler.flow;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -28,6 +29,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 
 @ExtendWith(MockitoExtension.class)
 class InitialFlowWriterTest {
@@ -52,6 +54,8 @@ class InitialFlowWriterTest {
             DataObjectIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(new NodeId("openflow:1"))).build());
         when(mockChange.getRootNode()).thenReturn(mockModification);
 
+        doReturn(RpcResultBuilder.success().buildFuture()).when(addFlow).invoke(any(AddFlowInput.class));
+
         initialFlowWriter.onDataTreeChanged(List.of(mockChange));
         verify(addFlow, timeout(500)).invoke(any(AddFlowInput.class));
     }
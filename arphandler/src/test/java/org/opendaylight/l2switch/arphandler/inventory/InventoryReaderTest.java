@@ -11,10 +11,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
@@ -96,19 +98,19 @@ class InventoryReaderTest {
 
         assertNotNull(inventoryReader.getNodeConnector(
             InstanceIdentifier.builder(Nodes.class).child(Node.class, new NodeKey(new NodeId("openflow:1"))).build(),
-            new MacAddress("aa:bb:cc:dd:ee:ff")));
+            new MacAddress("aa:bb:cc:dd:ee:ff")).get());
         verify(readOnlyTransaction, times(1)).close();
     }
 
     @Test
     void testGetNodeConnector_NullNodeInsId() throws Exception {
-        assertNull(inventoryReader.getNodeConnector(null, mockMacAddress));
+        assertNull(inventoryReader.getNodeConnector(null, mockMacAddress).get());
         verify(dataBroker, times(0)).newReadOnlyTransaction();
     }
 
     @Test
     void testGetNodeConnector_NullMacAddress() throws Exception {
-        assertNull(inventoryReader.getNodeConnector(mockInstanceIdentifier, null));
+        assertNull(inventoryReader.getNodeConnector(mockInstanceIdentifier, null).get());
         verify(dataBroker, times(0)).newReadOnlyTransaction();
     }
 
@@ -151,8 +153,39 @@ class InventoryReaderTest {
         assertEquals(1, inventoryReader.getControllerSwitchConnectors().size());
         assertEquals(1, inventoryReader.getSwitchNodeConnectors().size());
         assertEquals(2, inventoryReader.getSwitchNodeConnectors().get("1").size());
+        assertEquals(List.of(new NodeConnectorId("1"), new NodeConnectorId("2")),
+            inventoryReader.getSwitchFloodPorts().get("1"));
         // Ensure that refreshData is set to false
         inventoryReader.readInventory();
         verify(dataBroker, times(1)).newReadOnlyTransaction();
     }
+
+    @Test
+    void testRefreshInventory() throws Exception {
+        Nodes nodes = new NodesBuilder()
+            .setNode(BindingMap.of(new NodeBuilder()
+                .setId(new NodeId("1"))
+                .setNodeConnector(BindingMap.of(new NodeConnectorBuilder().setId(new NodeConnectorId("1")).build()))
+                .build()))
+            .build();
+
+        when(readOnlyTransaction.read(any(LogicalDatastoreType.class), any(DataObjectIdentifier.class)))
+                .thenReturn(FluentFutures.immediateFluentFuture(Optional.of(nodes)));
+        when(dataBroker.newReadOnlyTransaction()).thenReturn(readOnlyTransaction);
+
+        inventoryReader.refreshInventory().get();
+        verify(dataBroker, times(1)).newReadOnlyTransaction();
+        assertEquals(1, inventoryReader.getControllerSwitchConnectors().size());
+        assertEquals(1, inventoryReader.getSwitchNodeConnectors().get("1").size());
+    }
+
+    @Test
+    void testRefreshInventory_Closed() throws Exception {
+        inventoryReader.close();
+
+        // Packets still in flight once closed get a completed refresh
+        assertNull(inventoryReader.refreshInventory().get());
+        assertNull(inventoryReader.refreshInventory().get());
+        verify(dataBroker, never()).newReadOnlyTransaction();
+    }
 }
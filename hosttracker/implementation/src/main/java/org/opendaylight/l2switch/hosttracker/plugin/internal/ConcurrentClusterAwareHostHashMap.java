@@ -7,13 +7,23 @@
  */
 package org.opendaylight.l2switch.hosttracker.plugin.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import org.opendaylight.l2switch.hosttracker.plugin.inventory.Host;
 import org.opendaylight.l2switch.hosttracker.plugin.util.Utilities;
+import org.opendaylight.l2switch.hosttracker.plugin.util.Compare;
 import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.HostId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.HostNode;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Node;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
 import org.slf4j.Logger;
@@ -22,26 +32,78 @@ import org.slf4j.LoggerFactory;
 /**
  * This will (try to) submit all writes and deletes in to the MD-SAL database.
  * The removeLocally and putLocally methods should be used when dataChanges are dealt locally and not update to MD-SAL.
+ * The methods do not lock, callers serialize the updates of each host themselves.
  */
 public class ConcurrentClusterAwareHostHashMap {
     private static final Logger LOG = LoggerFactory.getLogger(ConcurrentClusterAwareHostHashMap.class);
 
+    /**
+     * A host along with when it was last seen, ordered by the latter.
+     */
+    private record LastSeen(long lastSeen, HostId hostId) {
+        static final Comparator<LastSeen> ORDER = Comparator.comparingLong(LastSeen::lastSeen)
+            .thenComparing(lastSeen -> lastSeen.hostId().getValue());
+    }
+
     private final OperationProcessor opProcessor;
     private final String topologyId;
+    private final long lastSeenUpdateInterval;
 
     /**
      * The instance identifiers for each host submitted to MD-SAL.
      */
     private final ConcurrentHashMap<DataObjectIdentifier<Node>, HostId> instanceIDs = new ConcurrentHashMap<>();
 
+    /**
+     * The instance identifier of each host, the reverse of {@link #instanceIDs}.
+     */
+    private final ConcurrentHashMap<HostId, DataObjectIdentifier<Node>> hostInstanceIDs = new ConcurrentHashMap<>();
+
     /**
      * The local Hosts' HashMap.
      */
     private final ConcurrentHashMap<HostId, Host> hostHashMap = new ConcurrentHashMap<>();
 
+    /**
+     * The hosts attached to each TerminationPoint, see {@link Host#getTpIds()}.
+     */
+    private final ConcurrentHashMap<TpId, Set<HostId>> tpHostIds = new ConcurrentHashMap<>();
+
+    /**
+     * When each host was last seen, see {@link Host#getLastSeen()}, and the hosts ordered by it.
+     */
+    private final ConcurrentHashMap<HostId, Long> hostLastSeen = new ConcurrentHashMap<>();
+    private final NavigableSet<LastSeen> hostsByLastSeen = new ConcurrentSkipListSet<>(LastSeen.ORDER);
+
+    /**
+     * The Node last enqueued for MD-SAL for each host, forgotten when the
+     * enqueued operations are dropped after a chain failure.
+     */
+    private final ConcurrentHashMap<HostId, Node> writtenHostNodes = new ConcurrentHashMap<>();
+
     public ConcurrentClusterAwareHostHashMap(OperationProcessor opProcessor, String topologyId) {
+        this(opProcessor, topologyId, 0);
+    }
+
+    /**
+     * Creates a map which only writes a host to MD-SAL again when it differs
+     * from the one last written. Hosts which only differ by the last seen
+     * timestamps of their addresses are written once one of them has advanced
+     * by the given interval.
+     *
+     * @param opProcessor
+     *            the processor of the MD-SAL operations.
+     * @param topologyId
+     *            the topology the hosts belong to.
+     * @param lastSeenUpdateInterval
+     *            the interval in milliseconds, 0 to write every change.
+     */
+    public ConcurrentClusterAwareHostHashMap(OperationProcessor opProcessor, String topologyId,
+            long lastSeenUpdateInterval) {
         this.opProcessor = opProcessor;
         this.topologyId = topologyId;
+        this.lastSeenUpdateInterval = lastSeenUpdateInterval;
+        opProcessor.addChainFailureListener(this.writtenHostNodes::clear);
     }
 
     /**
@@ -53,10 +115,12 @@ public class ConcurrentClusterAwareHostHashMap {
      *            the InstanceIdentifier&lt;Node&gt; of the Host to remove.
      * @return the removed Host if exits, null if it doesn't exist.
      */
-    public synchronized Host removeLocally(DataObjectIdentifier<Node> iiN) {
+    public Host removeLocally(DataObjectIdentifier<Node> iiN) {
         HostId hostId = this.instanceIDs.remove(iiN);
         if (hostId != null) {
-            return this.hostHashMap.remove(hostId);
+            this.hostInstanceIDs.remove(hostId, iiN);
+            this.writtenHostNodes.remove(hostId);
+            return unindex(this.hostHashMap.remove(hostId));
         }
         return null;
     }
@@ -69,15 +133,13 @@ public class ConcurrentClusterAwareHostHashMap {
      *            the key (HostId) of the Host to remove.
      * @return the removed Host if exits, null if it doesn't exist.
      */
-    public synchronized Host removeLocally(HostId key) {
-        final var iterator = this.instanceIDs.entrySet().iterator();
-        while (iterator.hasNext()) {
-            if (iterator.next().getValue().equals(key)) {
-                iterator.remove();
-                break;
-            }
+    public Host removeLocally(HostId key) {
+        final var iiN = this.hostInstanceIDs.remove(key);
+        if (iiN != null) {
+            this.instanceIDs.remove(iiN, key);
         }
-        return hostHashMap.remove(key);
+        this.writtenHostNodes.remove(key);
+        return unindex(hostHashMap.remove(key));
     }
 
     /**
@@ -90,11 +152,25 @@ public class ConcurrentClusterAwareHostHashMap {
      *            the Host to store locally.
      * @return the previous value associated with {@code key}, or {@code null} if there was no mapping for {@code key}
      */
-    public synchronized Host putLocally(DataObjectIdentifier<Node> ii, Host value) {
+    public Host putLocally(DataObjectIdentifier<Node> ii, Host value) {
         Host host = value;
         LOG.trace("Putting locally {}", host.getId());
         this.instanceIDs.put(ii, host.getId());
-        return this.hostHashMap.put(host.getId(), value);
+        final var previousII = this.hostInstanceIDs.put(host.getId(), ii);
+        if (previousII != null && !previousII.equals(ii)) {
+            this.instanceIDs.remove(previousII, host.getId());
+        }
+        final Set<TpId> tpIds = index(host);
+        final Host previous = this.hostHashMap.put(host.getId(), value);
+        if (previous != null && previous != host) {
+            // The TerminationPoints of the new value are indexed already, only forget the ones it no longer has
+            for (TpId tpId : previous.getTpIds()) {
+                if (!tpIds.contains(tpId)) {
+                    unindex(tpId, previous.getId());
+                }
+            }
+        }
+        return previous;
     }
 
     /**
@@ -103,14 +179,14 @@ public class ConcurrentClusterAwareHostHashMap {
      * @param hosts
      *            the hosts to remove.
      */
-    public synchronized void removeAll(List<Host> hosts) {
-        for (var e : this.instanceIDs.entrySet()) {
-            for (Host h : hosts) {
-                if (e.getValue().equals(h.getId())) {
-                    this.opProcessor.enqueueOperation(tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, e.getKey()));
-                    this.hostHashMap.remove(e.getValue());
-                    break;
-                }
+    public void removeAll(List<Host> hosts) {
+        for (Host h : hosts) {
+            final var iiN = this.hostInstanceIDs.remove(h.getId());
+            if (iiN != null) {
+                this.instanceIDs.remove(iiN, h.getId());
+                this.writtenHostNodes.remove(h.getId());
+                this.opProcessor.enqueueOperation(iiN, tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, iiN));
+                unindex(this.hostHashMap.remove(h.getId()));
             }
         }
     }
@@ -122,15 +198,14 @@ public class ConcurrentClusterAwareHostHashMap {
      * @param hostid
      *            the Host's hostId that will be merged into MD-SAL database.
      */
-    public synchronized void submit(HostId hostid) {
+    public void submit(HostId hostid) {
         Host host = this.hostHashMap.get(hostid);
         final Node hostNode = host.getHostNode();
         final var buildNodeIID = Utilities.buildNodeIID(hostNode.key(), topologyId);
-        this.opProcessor.enqueueOperation(
-            tx -> tx.mergeParentStructureMerge(LogicalDatastoreType.OPERATIONAL, buildNodeIID, hostNode));
+        if (enqueueMerge(buildNodeIID, hostid, hostNode)) {
+            LOG.trace("Enqueued for MD-SAL transaction {}", hostNode.getNodeId());
+        }
         putLocally(buildNodeIID, host);
-        this.instanceIDs.put(buildNodeIID, host.getId());
-        LOG.trace("Enqueued for MD-SAL transaction {}", hostNode.getNodeId());
     }
 
     /**
@@ -140,15 +215,14 @@ public class ConcurrentClusterAwareHostHashMap {
      * @param hosts
      *            the hosts to be sent into MD-SAL database.
      */
-    public synchronized void putAll(List<Host> hosts) {
+    public void putAll(List<Host> hosts) {
         for (Host h : hosts) {
             final Node hostNode = h.getHostNode();
             final var buildNodeIID = Utilities.buildNodeIID(hostNode.key(), topologyId);
-            this.opProcessor.enqueueOperation(
-                tx -> tx.mergeParentStructureMerge(LogicalDatastoreType.OPERATIONAL, buildNodeIID, hostNode));
+            if (enqueueMerge(buildNodeIID, h.getId(), hostNode)) {
+                LOG.trace("Putting MD-SAL {}", hostNode.getNodeId());
+            }
             putLocally(buildNodeIID, h);
-            this.instanceIDs.put(buildNodeIID, h.getId());
-            LOG.trace("Putting MD-SAL {}", hostNode.getNodeId());
         }
     }
 
@@ -161,12 +235,12 @@ public class ConcurrentClusterAwareHostHashMap {
      *            the value for the map
      * @return the old value from the local cache if present, null otherwise.
      */
-    public synchronized Host put(HostId hostId, Host host) {
+    public Host put(HostId hostId, Host host) {
         final Node hostNode = host.getHostNode();
         final var buildNodeIID = Utilities.buildNodeIID(hostNode.key(), topologyId);
-        this.opProcessor.enqueueOperation(
-            tx -> tx.mergeParentStructureMerge(LogicalDatastoreType.OPERATIONAL, buildNodeIID, hostNode));
-        LOG.trace("Putting MD-SAL {}", hostNode.getNodeId());
+        if (enqueueMerge(buildNodeIID, hostId, hostNode)) {
+            LOG.trace("Putting MD-SAL {}", hostNode.getNodeId());
+        }
         return putLocally(buildNodeIID, host);
     }
 
@@ -178,13 +252,15 @@ public class ConcurrentClusterAwareHostHashMap {
      *            the Host's hostId to remove
      * @return the old value from the local cache if present, null otherwise.
      */
-    public synchronized Host remove(HostId hostId) {
-        Host removedValue = this.hostHashMap.remove(hostId);
+    public Host remove(HostId hostId) {
+        Host removedValue = unindex(this.hostHashMap.remove(hostId));
         if (removedValue != null) {
             Node hostNode = removedValue.getHostNode();
             final var hnIID = Utilities.buildNodeIID(hostNode.key(), topologyId);
-            this.opProcessor.enqueueOperation(tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, hnIID));
+            this.opProcessor.enqueueOperation(hnIID, tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, hnIID));
             this.instanceIDs.remove(hnIID);
+            this.hostInstanceIDs.remove(hostId, hnIID);
+            this.writtenHostNodes.remove(hostId);
         }
         return removedValue;
     }
@@ -201,11 +277,50 @@ public class ConcurrentClusterAwareHostHashMap {
      * Removes all of the mappings from this local HashMap and from MD-SAL. The
      * local HashMap will be empty after this call returns.
      */
-    public synchronized void clear() {
+    public void clear() {
         for (var e : this.instanceIDs.entrySet()) {
-            this.opProcessor.enqueueOperation(tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, e.getKey()));
+            this.opProcessor.enqueueOperation(e.getKey(),
+                tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, e.getKey()));
         }
+        this.instanceIDs.clear();
+        this.hostInstanceIDs.clear();
+        this.writtenHostNodes.clear();
         this.hostHashMap.clear();
+        this.tpHostIds.clear();
+        this.hostLastSeen.clear();
+        this.hostsByLastSeen.clear();
+    }
+
+    /**
+     * Returns the ids of the hosts attached to the given TerminationPoint,
+     * either as a TerminationPoint of the host or as its corresponding
+     * TerminationPoint. The result may include hosts which have since been
+     * removed.
+     *
+     * @param tpId
+     *            the TerminationPoint's TpId.
+     * @return the ids of the hosts attached to the TerminationPoint.
+     */
+    public Set<HostId> getHostIdsAttachedTo(TpId tpId) {
+        final Set<HostId> hostIds = this.tpHostIds.get(tpId);
+        return hostIds == null ? Set.of() : Set.copyOf(hostIds);
+    }
+
+    /**
+     * Returns the ids of the hosts last seen before the given time, the ones
+     * seen least recently first. The result may include hosts which have
+     * since been seen again or removed.
+     *
+     * @param millis
+     *            the time in milliseconds.
+     * @return the ids of the hosts not seen since the given time.
+     */
+    public List<HostId> getHostIdsNotSeenSince(long millis) {
+        final List<HostId> hostIds = new ArrayList<>();
+        for (LastSeen lastSeen : this.hostsByLastSeen.headSet(new LastSeen(millis, new HostId("")))) {
+            hostIds.add(lastSeen.hostId());
+        }
+        return hostIds;
     }
 
     /**
@@ -216,4 +331,94 @@ public class ConcurrentClusterAwareHostHashMap {
     public Collection<Host> values() {
         return this.hostHashMap.values();
     }
+
+    /**
+     * Enqueues the merge of a host's Node into MD-SAL, unless it does not
+     * differ from the Node last enqueued for the host.
+     *
+     * @return true if the merge was enqueued.
+     */
+    private boolean enqueueMerge(DataObjectIdentifier<Node> iiN, HostId hostId, Node hostNode) {
+        final Node written = this.writtenHostNodes.get(hostId);
+        if (written != null && !isUpdate(written, hostNode)) {
+            LOG.trace("Skipping unchanged host {}", hostId);
+            return false;
+        }
+        // Recorded first, so that a chain failure dropping the merge also forgets it
+        this.writtenHostNodes.put(hostId, hostNode);
+        this.opProcessor.enqueueOperation(iiN,
+            tx -> tx.mergeParentStructureMerge(LogicalDatastoreType.OPERATIONAL, iiN, hostNode));
+        return true;
+    }
+
+    /**
+     * Checks whether a host's Node is worth writing over the Node last
+     * written: their termination points, attachment points or addresses
+     * differ, or the last seen timestamp of one of the addresses has advanced
+     * by at least the last seen update interval.
+     */
+    private boolean isUpdate(Node written, Node hostNode) {
+        if (written.equals(hostNode)) {
+            return false;
+        }
+        final HostNode writtenHostNode = written.augmentation(HostNode.class);
+        final HostNode hostNodeAug = hostNode.augmentation(HostNode.class);
+        if (writtenHostNode == null || hostNodeAug == null
+                || !Objects.equals(written.getTerminationPoint(), hostNode.getTerminationPoint())
+                || !Objects.equals(writtenHostNode.getAttachmentPoints(), hostNodeAug.getAttachmentPoints())) {
+            return true;
+        }
+        final var writtenAddresses = writtenHostNode.nonnullAddresses();
+        final var addresses = hostNodeAug.nonnullAddresses();
+        if (!writtenAddresses.keySet().equals(addresses.keySet())) {
+            return true;
+        }
+        for (Addresses addrs : addresses.values()) {
+            final Addresses writtenAddrs = writtenAddresses.get(addrs.key());
+            if (!writtenAddrs.equals(addrs) && (!Compare.addresses(writtenAddrs, addrs)
+                    || !Objects.equals(writtenAddrs.getFirstSeen(), addrs.getFirstSeen())
+                    || writtenAddrs.getLastSeen() == null || addrs.getLastSeen() == null
+                    || addrs.getLastSeen() - writtenAddrs.getLastSeen() >= lastSeenUpdateInterval)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<TpId> index(Host host) {
+        final long lastSeen = host.getLastSeen();
+        final Long previousLastSeen = this.hostLastSeen.put(host.getId(), lastSeen);
+        if (previousLastSeen == null || previousLastSeen != lastSeen) {
+            this.hostsByLastSeen.add(new LastSeen(lastSeen, host.getId()));
+            if (previousLastSeen != null) {
+                this.hostsByLastSeen.remove(new LastSeen(previousLastSeen, host.getId()));
+            }
+        }
+
+        final Set<TpId> tpIds = host.getTpIds();
+        for (TpId tpId : tpIds) {
+            this.tpHostIds.computeIfAbsent(tpId, key -> ConcurrentHashMap.newKeySet()).add(host.getId());
+        }
+        return tpIds;
+    }
+
+    private Host unindex(Host host) {
+        if (host != null) {
+            final Long lastSeen = this.hostLastSeen.remove(host.getId());
+            if (lastSeen != null) {
+                this.hostsByLastSeen.remove(new LastSeen(lastSeen, host.getId()));
+            }
+            for (TpId tpId : host.getTpIds()) {
+                unindex(tpId, host.getId());
+            }
+        }
+        return host;
+    }
+
+    private void unindex(TpId tpId, HostId hostId) {
+        this.tpHostIds.computeIfPresent(tpId, (key, hostIds) -> {
+            hostIds.remove(hostId);
+            return hostIds.isEmpty() ? null : hostIds;
+        });
+    }
 }
@@ -7,11 +7,17 @@
  */
 package org.opendaylight.l2switch.hosttracker.plugin.internal;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import org.opendaylight.l2switch.hosttracker.plugin.inventory.Host;
 import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.HostId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.LinkId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
 import org.slf4j.Logger;
@@ -32,11 +38,21 @@ public class ConcurrentClusterAwareLinkHashMap {
      */
     private final ConcurrentHashMap<DataObjectIdentifier<Link>, LinkId> instanceIDs = new ConcurrentHashMap<>();
 
+    /**
+     * The instance identifier of each Link, the reverse of {@link #instanceIDs}.
+     */
+    private final ConcurrentHashMap<LinkId, DataObjectIdentifier<Link>> linkInstanceIDs = new ConcurrentHashMap<>();
+
     /**
      * The local Links' HashMap.
      */
     private final ConcurrentHashMap<LinkId, Link> linkHashMap = new ConcurrentHashMap<>();
 
+    /**
+     * The Links from or to each host.
+     */
+    private final ConcurrentHashMap<HostId, Set<LinkId>> hostLinkIds = new ConcurrentHashMap<>();
+
     public ConcurrentClusterAwareLinkHashMap(OperationProcessor opProcessor) {
         this.opProcessor = opProcessor;
     }
@@ -51,10 +67,26 @@ public class ConcurrentClusterAwareLinkHashMap {
      * @return the previous value associated with {@code key}, or
      *         {@code null} if there was no mapping for {@code key}
      */
-    public synchronized Link putLocally(DataObjectIdentifier<Link> ii, Link link) {
+    public Link putLocally(DataObjectIdentifier<Link> ii, Link link) {
         LOG.trace("Putting locally {}", link.getLinkId());
         this.instanceIDs.put(ii, link.getLinkId());
-        return this.linkHashMap.put(link.getLinkId(), link);
+        final var previousII = this.linkInstanceIDs.put(link.getLinkId(), ii);
+        if (previousII != null && !previousII.equals(ii)) {
+            this.instanceIDs.remove(previousII, link.getLinkId());
+        }
+        final Set<HostId> hostIds = hostIds(link);
+        for (HostId hostId : hostIds) {
+            this.hostLinkIds.computeIfAbsent(hostId, key -> ConcurrentHashMap.newKeySet()).add(link.getLinkId());
+        }
+        final Link previous = this.linkHashMap.put(link.getLinkId(), link);
+        if (previous != null) {
+            for (HostId hostId : hostIds(previous)) {
+                if (!hostIds.contains(hostId)) {
+                    unindex(hostId, previous.getLinkId());
+                }
+            }
+        }
+        return previous;
     }
 
     /**
@@ -63,15 +95,14 @@ public class ConcurrentClusterAwareLinkHashMap {
      * @param links
      *            the links to remove.
      */
-    public synchronized void removeAll(List<Link> links) {
-        for (var e : this.instanceIDs.entrySet()) {
-            LOG.debug("Links to remove from local & MD-SAL database: {}", links);
-            for (Link l : links) {
-                if (e.getValue().equals(l.getLinkId())) {
-                    this.opProcessor.enqueueOperation(tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, e.getKey()));
-                    this.linkHashMap.remove(e.getValue());
-                    break;
-                }
+    public void removeAll(List<Link> links) {
+        LOG.debug("Links to remove from local & MD-SAL database: {}", links);
+        for (Link l : links) {
+            final var iiL = this.linkInstanceIDs.remove(l.getLinkId());
+            if (iiL != null) {
+                this.instanceIDs.remove(iiL, l.getLinkId());
+                this.opProcessor.enqueueOperation(iiL, tx -> tx.delete(LogicalDatastoreType.OPERATIONAL, iiL));
+                unindex(this.linkHashMap.remove(l.getLinkId()));
             }
         }
     }
@@ -81,10 +112,30 @@ public class ConcurrentClusterAwareLinkHashMap {
      *
      * @return the Values from this local HashMap.
      */
-    public synchronized Collection<Link> values() {
+    public Collection<Link> values() {
         return this.linkHashMap.values();
     }
 
+    /**
+     * Returns the Links from or to the given host.
+     *
+     * @param hostId the host's HostId.
+     * @return the Links having the host as their source or destination node.
+     */
+    public List<Link> linksOf(HostId hostId) {
+        final List<Link> links = new ArrayList<>();
+        final Set<LinkId> linkIds = this.hostLinkIds.get(hostId);
+        if (linkIds != null) {
+            for (LinkId linkId : linkIds) {
+                final Link link = this.linkHashMap.get(linkId);
+                if (link != null) {
+                    links.add(link);
+                }
+            }
+        }
+        return links;
+    }
+
     /**
      * Removes, if exists, the Link with the given InstanceIdentifier&lt;Link&gt; from
      * this local HashMap. Ideally used for link data listener events.
@@ -93,10 +144,11 @@ public class ConcurrentClusterAwareLinkHashMap {
      *            the InstanceIdentifier&lt;Link&gt; of the Link to remove.
      * @return the removed Link if exits, null if it doesn't exist.
      */
-    public synchronized Link removeLocally(DataObjectIdentifier<Link> iiL) {
+    public Link removeLocally(DataObjectIdentifier<Link> iiL) {
         LinkId linkId = this.instanceIDs.remove(iiL);
         if (linkId != null) {
-            return this.linkHashMap.remove(linkId);
+            this.linkInstanceIDs.remove(linkId, iiL);
+            return unindex(this.linkHashMap.remove(linkId));
         }
         return null;
     }
@@ -109,14 +161,43 @@ public class ConcurrentClusterAwareLinkHashMap {
      *            the key (LinkId) of the Link to remove.
      * @return the removed Link if exits, null if it doesn't exist.
      */
-    public synchronized Link removeLocally(LinkId key) {
-        var iterator = this.instanceIDs.entrySet().iterator();
-        while (iterator.hasNext()) {
-            if (iterator.next().getValue().equals(key)) {
-                iterator.remove();
-                break;
+    public Link removeLocally(LinkId key) {
+        final var iiL = this.linkInstanceIDs.remove(key);
+        if (iiL != null) {
+            this.instanceIDs.remove(iiL, key);
+        }
+        return unindex(linkHashMap.remove(key));
+    }
+
+    private Link unindex(Link link) {
+        if (link != null) {
+            for (HostId hostId : hostIds(link)) {
+                unindex(hostId, link.getLinkId());
             }
         }
-        return linkHashMap.remove(key);
+        return link;
+    }
+
+    private void unindex(HostId hostId, LinkId linkId) {
+        this.hostLinkIds.computeIfPresent(hostId, (key, linkIds) -> {
+            linkIds.remove(linkId);
+            return linkIds.isEmpty() ? null : linkIds;
+        });
+    }
+
+    /**
+     * Returns the hosts a Link goes from or to, that is its source and destination nodes created by hosttracker.
+     */
+    private static Set<HostId> hostIds(Link link) {
+        final Set<HostId> hostIds = new HashSet<>(2);
+        addHostId(hostIds, link.getSource() == null ? null : link.getSource().getSourceNode());
+        addHostId(hostIds, link.getDestination() == null ? null : link.getDestination().getDestNode());
+        return hostIds;
+    }
+
+    private static void addHostId(Set<HostId> hostIds, NodeId nodeId) {
+        if (nodeId != null && nodeId.getValue().startsWith(Host.NODE_PREFIX)) {
+            hostIds.add(new HostId(nodeId.getValue().substring(Host.NODE_PREFIX.length())));
+        }
     }
 }
@@ -10,21 +10,31 @@ package org.opendaylight.l2switch.hosttracker.plugin.internal;
 import static java.util.Objects.requireNonNull;
 
 import com.google.common.base.Preconditions;
-import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.Striped;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import javax.management.JMException;
+import javax.management.ObjectName;
 import org.opendaylight.l2switch.hosttracker.plugin.inventory.Host;
 import org.opendaylight.l2switch.hosttracker.plugin.util.Utilities;
 import org.opendaylight.mdsal.binding.api.DataBroker;
 import org.opendaylight.mdsal.binding.api.DataObjectModification;
 import org.opendaylight.mdsal.binding.api.DataTreeChangeListener;
 import org.opendaylight.mdsal.binding.api.DataTreeModification;
-import org.opendaylight.mdsal.binding.api.ReadTransaction;
 import org.opendaylight.mdsal.common.api.LogicalDatastoreType;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.AddressCapableNodeConnector;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
@@ -33,8 +43,11 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.Host
 import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.host.AttachmentPointsBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.l2switch.host.tracker.config.rev140528.HostTrackerConfig;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NetworkTopology;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TopologyId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.Topology;
@@ -57,20 +70,51 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
 
     private static final String TOPOLOGY_NAME = "flow:1";
 
+    private static final int HOST_LOCK_STRIPES = CPUS * 16;
+
+    private static final String STATISTICS_MBEAN_NAME = "org.opendaylight.l2switch:type=HostTracker";
+
+    // Address observations queued per observation thread before further ones are dropped
+    private static final int OBSERVATION_QUEUE_DEPTH = 1024;
+
+    // How long, and how many, observations on a node connector not mirrored yet are kept for it
+    private static final long AWAIT_NODE_CONNECTOR_MILLIS = 5000;
+    private static final int MAX_AWAITING_OBSERVATIONS = 16;
+
+    private record AwaitingObservation(Addresses addrs, long receivedNanos) {
+    }
+
     private final DataBroker dataService;
     private final String topologyId;
     private final long hostPurgeInterval;
     private final long hostPurgeAge;
 
     private final ScheduledExecutorService exec = Executors.newScheduledThreadPool(CPUS);
+    // Processes the link changes one at a time, in the order they were made
+    private final ExecutorService linkExec = Executors.newSingleThreadExecutor();
+    // Process the address observations, those on a node connector in order by the same thread
+    private final ExecutorService[] observationExecs = new ExecutorService[CPUS];
 
     private final ConcurrentClusterAwareHostHashMap hosts;
+    // Serializes the updates of each host, hosts hashing to different stripes being updated in parallel
+    private final Striped<Lock> hostLocks = Striped.lock(HOST_LOCK_STRIPES);
     private final ConcurrentClusterAwareLinkHashMap links;
+    // Termination points at the end of a link to a switch
+    private final InternalTpIndex internalTps = new InternalTpIndex();
     private final OperationProcessor opProcessor;
     private final Thread processorThread;
+    // The node connectors of each inventory node, served to the address observations instead of reading them
+    private final ConcurrentMap<DataObjectIdentifier<
+        org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node>,
+        Set<NodeConnectorKey>> inventoryNodeConnectors = new ConcurrentHashMap<>();
+    // Observations on node connectors not mirrored yet, processed once they are
+    private final ConcurrentMap<DataObjectIdentifier<NodeConnector>, List<AwaitingObservation>> awaitingObservations =
+        new ConcurrentHashMap<>();
+    private Registration nodeConnectorListenerRegistration;
     private Registration addrsNodeListenerRegistration;
     private Registration hostNodeListenerRegistration;
     private Registration linkNodeListenerRegistration;
+    private ObjectName statisticsName;
 
     /**
      * It creates hosts using reference to MD-SAl / toplogy module. For every hostPurgeIntervalInput time interval
@@ -84,6 +128,8 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
         this.opProcessor = new OperationProcessor(dataService);
         Preconditions.checkArgument(config.getHostPurgeAge() >= 0, "hostPurgeAgeInput must be non-negative");
         Preconditions.checkArgument(config.getHostPurgeInterval() >= 0, "hostPurgeIntervalInput must be non-negative");
+        Preconditions.checkArgument(config.getLastSeenUpdateInterval() >= 0,
+            "lastSeenUpdateInterval must be non-negative");
         this.hostPurgeAge = config.getHostPurgeAge();
         this.hostPurgeInterval = config.getHostPurgeInterval();
         processorThread = new Thread(opProcessor);
@@ -93,9 +139,16 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
         } else {
             this.topologyId = maybeTopologyId;
         }
-        this.hosts = new ConcurrentClusterAwareHostHashMap(opProcessor, this.topologyId);
+        this.hosts = new ConcurrentClusterAwareHostHashMap(opProcessor, this.topologyId,
+            config.getLastSeenUpdateInterval());
         this.links = new ConcurrentClusterAwareLinkHashMap(opProcessor);
+        for (int i = 0; i < observationExecs.length; i++) {
+            observationExecs[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(OBSERVATION_QUEUE_DEPTH));
+        }
 
+        exec.scheduleWithFixedDelay(this::expireAwaitingObservations, AWAIT_NODE_CONNECTOR_MILLIS,
+            AWAIT_NODE_CONNECTOR_MILLIS, TimeUnit.MILLISECONDS);
         if (hostPurgeInterval > 0) {
             exec.scheduleWithFixedDelay(() -> purgeHostsNotSeenInLast(hostPurgeAge), 0, hostPurgeInterval,
                     TimeUnit.SECONDS);
@@ -105,6 +158,14 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
     @SuppressWarnings("unchecked")
     public void init() {
         processorThread.start();
+        registerStatistics();
+
+        final var nodeConnectorIID = DataObjectReference.builder(Nodes.class)
+            .child(org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node.class)
+            .child(NodeConnector.class)
+            .build();
+        this.nodeConnectorListenerRegistration = dataService.registerLegacyTreeChangeListener(
+            LogicalDatastoreType.OPERATIONAL, nodeConnectorIID, this::onNodeConnectorsChanged);
 
         final var addrCapableNodeConnectors = DataObjectReference.builder(Nodes.class)
             .child(org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node.class)
@@ -133,8 +194,7 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
             .build();
 
         this.linkNodeListenerRegistration = dataService.registerLegacyTreeChangeListener(
-            // FIXME: add an specialized object instead of going through raw types!
-            LogicalDatastoreType.OPERATIONAL, linkIID, (DataTreeChangeListener)this);
+            LogicalDatastoreType.OPERATIONAL, linkIID, this::onLinksChanged);
 
         //Processing addresses that existed before we register as a data change listener.
 //        ReadOnlyTransaction newReadOnlyTransaction = dataService.newReadOnlyTransaction();
@@ -186,15 +246,76 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
         });
     }
 
+    /**
+     * Mirrors the keys of the node connectors as they are added and removed, in the order of the changes. Changes
+     * within a node connector, such as its statistics or addresses, are ignored. The observations waiting for an
+     * added node connector are handed off to be processed.
+     */
+    private void onNodeConnectorsChanged(List<DataTreeModification<NodeConnector>> changes) {
+        for (DataTreeModification<NodeConnector> change : changes) {
+            final var iin = change.path().trimTo(
+                org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node.class);
+            final DataObjectModification<NodeConnector> rootNode = change.getRootNode();
+            switch (rootNode.modificationType()) {
+                case WRITE:
+                    inventoryNodeConnectors.computeIfAbsent(iin, key -> ConcurrentHashMap.newKeySet())
+                        .add(rootNode.dataAfter().key());
+                    replayAwaitingObservations(change.path());
+                    break;
+                case DELETE:
+                    final NodeConnectorKey key = rootNode.dataBefore().key();
+                    inventoryNodeConnectors.computeIfPresent(iin, (nodeIid, nodeConnectors) -> {
+                        nodeConnectors.remove(key);
+                        return nodeConnectors.isEmpty() ? null : nodeConnectors;
+                    });
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void onLinksChanged(List<DataTreeModification<Link>> changes) {
+        linkExec.execute(() -> {
+            for (DataTreeModification<Link> change : changes) {
+                final DataObjectModification<Link> rootNode = change.getRootNode();
+                switch (rootNode.modificationType()) {
+                    case SUBTREE_MODIFIED:
+                    case WRITE:
+                        final Link linkBefore = rootNode.dataBefore();
+                        if (linkBefore != null) {
+                            internalTps.removeLink(linkBefore);
+                        }
+                        internalTps.addLink(rootNode.dataAfter());
+                        links.putLocally(change.path(), rootNode.dataAfter());
+                        break;
+                    case DELETE:
+                        final Link link = rootNode.dataBefore();
+                        internalTps.removeLink(link);
+                        links.removeLocally(change.path());
+                        linkRemoved(change.path(), link);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+    }
+
     @SuppressWarnings("unchecked")
     private void onModifiedData(DataObjectIdentifier<?> iid, DataObjectModification<?> rootNode) {
         final DataObject dataObject = rootNode.dataAfter();
         if (dataObject instanceof Addresses addresses) {
-            packetReceived(addresses, iid);
+            processAddresses(addresses, iid);
         } else if (dataObject instanceof Node node) {
-            hosts.putLocally((DataObjectIdentifier<Node>) iid, Host.createHost(node));
-        } else if (dataObject instanceof Link link) {
-            links.putLocally((DataObjectIdentifier<Link>) iid, link);
+            final Host host = Host.createHost(node);
+            final Lock lock = hostLocks.get(host.getId());
+            lock.lock();
+            try {
+                hosts.putLocally((DataObjectIdentifier<Node>) iid, host);
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
@@ -205,71 +326,135 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
             DataObjectIdentifier<Node> iiN = (DataObjectIdentifier<Node>) iid;
             HostNode hostNode = node.augmentation(HostNode.class);
             if (hostNode != null) {
-                hosts.removeLocally(iiN);
+                final Lock lock = hostLocks.get(hostNode.getId());
+                lock.lock();
+                try {
+                    hosts.removeLocally(iiN);
+                } finally {
+                    lock.unlock();
+                }
             }
-        } else if (iid.lastStep().type().equals(Link.class)) {
-            // TODO performance improvement here
-            DataObjectIdentifier<Link> iiL = (DataObjectIdentifier<Link>) iid;
-            links.removeLocally(iiL);
-            linkRemoved(iiL, (Link) rootNode.dataBefore());
         }
     }
 
+    /**
+     * Processes an address observation asynchronously. The observations made on a node connector are processed
+     * in order, and dropped once too many are queued.
+     *
+     * @param addrs the observed address
+     * @param ii the identifier of the node connector the address was observed on, or of a descendant of it
+     */
     public void packetReceived(Addresses addrs, DataObjectIdentifier<?> ii) {
         final var iinc = ii.trimTo(NodeConnector.class);
-        final var iin = ii.trimTo(org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node.class);
-
-        FluentFuture<Optional<NodeConnector>> futureNodeConnector;
-        FluentFuture<Optional<
-            org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node>> futureNode;
-        try (ReadTransaction readTx = dataService.newReadOnlyTransaction()) {
-            futureNodeConnector = readTx.read(LogicalDatastoreType.OPERATIONAL, iinc);
-            futureNode = readTx.read(LogicalDatastoreType.OPERATIONAL, iin);
-            readTx.close();
-        }
-        Optional<NodeConnector> opNodeConnector = null;
-        Optional<org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node> opNode = null;
         try {
-            opNodeConnector = futureNodeConnector.get();
-            opNode = futureNode.get();
-        } catch (ExecutionException | InterruptedException e) {
-            LOG.warn("Failed to get node connector {}", iinc, e);
+            observationExecs[Math.floorMod(iinc.hashCode(), observationExecs.length)]
+                .execute(() -> processAddresses(addrs, iinc));
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Dropping address observation on {}, too many are queued", iinc);
+            opProcessor.getStatistics().observationsDropped(1);
         }
-        if (opNode != null && opNode.isPresent()
-                && opNodeConnector != null && opNodeConnector.isPresent()) {
-            processHost(opNode.orElseThrow(), opNodeConnector.orElseThrow(), addrs);
+    }
+
+    private void processAddresses(Addresses addrs, DataObjectIdentifier<?> ii) {
+        final var iinc = ii.trimTo(NodeConnector.class);
+        final NodeConnectorKey key = iinc.toLegacy().firstKeyOf(NodeConnector.class);
+        final Set<NodeConnectorKey> nodeConnectors = inventoryNodeConnectors.get(nodePath(iinc));
+        if (nodeConnectors != null && nodeConnectors.contains(key)) {
+            final var nodeId = new NodeId(iinc.toLegacy().firstKeyOf(
+                org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node.class).getId().getValue());
+            processHost(nodeId, nodeConnectors, new NodeConnectorBuilder().setId(key.getId()).build(), addrs);
+        } else {
+            awaitNodeConnector(iinc, addrs);
         }
     }
 
-    private void processHost(org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node node,
+    /**
+     * Keeps an observation made on a node connector which is not mirrored yet, the latest ones only, until it is
+     * added or the observation expires.
+     */
+    private void awaitNodeConnector(DataObjectIdentifier<NodeConnector> iinc, Addresses addrs) {
+        LOG.trace("Waiting for unknown node connector {}", iinc);
+        final var observation = new AwaitingObservation(addrs, System.nanoTime());
+        awaitingObservations.compute(iinc, (path, observations) -> {
+            final List<AwaitingObservation> updated = observations != null ? observations : new ArrayList<>();
+            if (updated.size() >= MAX_AWAITING_OBSERVATIONS) {
+                updated.remove(0);
+                opProcessor.getStatistics().observationsDropped(1);
+            }
+            updated.add(observation);
+            return updated;
+        });
+        // The node connector may have been mirrored meanwhile, after its listener looked for awaiting observations
+        final Set<NodeConnectorKey> nodeConnectors = inventoryNodeConnectors.get(nodePath(iinc));
+        if (nodeConnectors != null && nodeConnectors.contains(iinc.toLegacy().firstKeyOf(NodeConnector.class))) {
+            replayAwaitingObservations(iinc);
+        }
+    }
+
+    private void replayAwaitingObservations(DataObjectIdentifier<NodeConnector> iinc) {
+        final List<AwaitingObservation> observations = awaitingObservations.remove(iinc);
+        if (observations != null) {
+            final long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(AWAIT_NODE_CONNECTOR_MILLIS);
+            for (AwaitingObservation observation : observations) {
+                if (observation.receivedNanos - cutoff >= 0) {
+                    packetReceived(observation.addrs, iinc);
+                } else {
+                    opProcessor.getStatistics().observationsDropped(1);
+                }
+            }
+        }
+    }
+
+    private void expireAwaitingObservations() {
+        final long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(AWAIT_NODE_CONNECTOR_MILLIS);
+        for (DataObjectIdentifier<NodeConnector> iinc : awaitingObservations.keySet()) {
+            awaitingObservations.computeIfPresent(iinc, (path, observations) -> {
+                final int awaiting = observations.size();
+                observations.removeIf(observation -> observation.receivedNanos - cutoff < 0);
+                if (observations.size() < awaiting) {
+                    LOG.debug("Dropping {} address observations on unknown node connector {}",
+                        awaiting - observations.size(), path);
+                    opProcessor.getStatistics().observationsDropped(awaiting - observations.size());
+                }
+                return observations.isEmpty() ? null : observations;
+            });
+        }
+    }
+
+    private static DataObjectIdentifier<org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node>
+            nodePath(DataObjectIdentifier<NodeConnector> iinc) {
+        return iinc.trimTo(org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node.class);
+    }
+
+    private void processHost(NodeId nodeId, Set<NodeConnectorKey> nodeConnectors,
                              NodeConnector nodeConnector,
                              Addresses addrs) {
-        List<Host> hostsToMod = new ArrayList<>();
-        List<Host> hostsToRem = new ArrayList<>();
         List<Link> linksToRem = new ArrayList<>();
         List<Link> linksToAdd = new ArrayList<>();
-        synchronized (hosts) {
-            LOG.trace("Processing nodeConnector: {} ", nodeConnector.getId());
-            HostId hostId = Host.createHostId(addrs);
-            if (hostId != null) {
-                if (isNodeConnectorInternal(nodeConnector)) {
-                    LOG.trace("NodeConnector is internal: {} ", nodeConnector.getId());
-                    removeNodeConnectorFromHost(hostsToMod, hostsToRem, nodeConnector);
-                    hosts.removeAll(hostsToRem);
-                    hosts.putAll(hostsToMod);
-                } else {
-                    LOG.trace("NodeConnector is NOT internal {} ", nodeConnector.getId());
-                    Host host = new Host(addrs, nodeConnector);
-                    if (hosts.containsKey(host.getId())) {
-                        hosts.get(host.getId()).mergeHostWith(host);
+        LOG.trace("Processing nodeConnector: {} ", nodeConnector.getId());
+        HostId hostId = Host.createHostId(addrs);
+        if (hostId != null) {
+            if (isNodeConnectorInternal(nodeConnector)) {
+                LOG.trace("NodeConnector is internal: {} ", nodeConnector.getId());
+                removeNodeConnectorFromHost(nodeConnector);
+            } else {
+                LOG.trace("NodeConnector is NOT internal {} ", nodeConnector.getId());
+                Host host = new Host(addrs, nodeConnector);
+                final Lock lock = hostLocks.get(hostId);
+                lock.lock();
+                try {
+                    if (hosts.containsKey(hostId)) {
+                        hosts.get(hostId).mergeHostWith(host);
                     } else {
-                        hosts.put(host.getId(), host);
+                        hosts.put(hostId, host);
                     }
-                    List<Link> newLinks = hosts.get(host.getId()).createLinks(node);
+                    List<Link> newLinks = hosts.get(hostId).createLinks(nodeId, nodeConnectors);
                     if (newLinks != null) {
                         linksToAdd.addAll(newLinks);
                     }
-                    hosts.submit(host.getId());
+                    hosts.submit(hostId);
+                } finally {
+                    lock.unlock();
                 }
             }
         }
@@ -282,74 +467,59 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
      * to hosts created by hosttracker.
      *
      * @param nodeConnector the nodeConnector to check if it is internal or not.
-     * @return true if it was found a host connected to this nodeConnetor, false
-     *     if it was not found a network topology or it was not found a host connected to this nodeConnetor.
+     * @return true if the nodeConnector is the end of a link to a switch, false otherwise.
      */
     private boolean isNodeConnectorInternal(NodeConnector nodeConnector) {
-        TpId tpId = new TpId(nodeConnector.key().getId().getValue());
-        final var ntII = DataObjectIdentifier.builder(NetworkTopology.class).build();
-        FluentFuture<Optional<NetworkTopology>> lfONT;
-        try (ReadTransaction rot = dataService.newReadOnlyTransaction()) {
-            lfONT = rot.read(LogicalDatastoreType.OPERATIONAL, ntII);
-        }
-        Optional<NetworkTopology> optionalNT;
-        try {
-            optionalNT = lfONT.get();
-        } catch (InterruptedException | ExecutionException e) {
-            LOG.warn("Failed to get network topology {}", ntII, e);
-            return false;
-        }
-        if (optionalNT.isPresent()) {
-            NetworkTopology networkTopo = optionalNT.orElseThrow();
-            for (Topology t : networkTopo.nonnullTopology().values()) {
-                if (t.getLink() != null) {
-                    for (Link l : t.nonnullLink().values()) {
-                        if (l.getSource().getSourceTp().equals(tpId)
-                                && !l.getDestination().getDestTp().getValue().startsWith(Host.NODE_PREFIX)
-                                || l.getDestination().getDestTp().equals(tpId)
-                                && !l.getSource().getSourceTp().getValue().startsWith(Host.NODE_PREFIX)) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        return internalTps.isInternal(new TpId(nodeConnector.key().getId().getValue()));
     }
 
-    private void removeLinksFromHosts(List<Host> hostsToMod, List<Host> hostsToRem, Link linkRemoved) {
-        for (Host h : hosts.values()) {
-            h.removeTerminationPoint(linkRemoved.getSource().getSourceTp());
-            h.removeTerminationPoint(linkRemoved.getDestination().getDestTp());
-            if (h.isOrphan()) {
-                hostsToRem.add(h);
-            } else {
-                hostsToMod.add(h);
-            }
+    private void removeLinksFromHosts(Link linkRemoved) {
+        final Set<HostId> hostIds = new HashSet<>(hosts.getHostIdsAttachedTo(linkRemoved.getSource().getSourceTp()));
+        hostIds.addAll(hosts.getHostIdsAttachedTo(linkRemoved.getDestination().getDestTp()));
+        for (HostId hostId : hostIds) {
+            updateHost(hostId, host -> {
+                host.removeTerminationPoint(linkRemoved.getSource().getSourceTp());
+                host.removeTerminationPoint(linkRemoved.getDestination().getDestTp());
+            });
         }
     }
 
-    private void removeNodeConnectorFromHost(List<Host> hostsToMod, List<Host> hostsToRem, NodeConnector nc) {
+    private void removeNodeConnectorFromHost(NodeConnector nc) {
         AttachmentPointsBuilder atStD = Utilities.createAPsfromNodeConnector(nc);
-        for (Host h : hosts.values()) {
-            h.removeAttachmentPoints(atStD);
-            if (h.isOrphan()) {
-                hostsToRem.add(h);
+        for (HostId hostId : hosts.getHostIdsAttachedTo(atStD.getTpId())) {
+            updateHost(hostId, host -> host.removeAttachmentPoints(atStD));
+        }
+    }
+
+    /**
+     * Applies an update to a host while holding its lock, then removes the host if it became an orphan or
+     * writes it to MD-SAL otherwise.
+     *
+     * @param hostId the id of the host to update
+     * @param update the update to apply, unless the host has been removed meanwhile
+     */
+    private void updateHost(HostId hostId, Consumer<Host> update) {
+        final Lock lock = hostLocks.get(hostId);
+        lock.lock();
+        try {
+            final Host host = hosts.get(hostId);
+            if (host == null) {
+                return;
+            }
+            update.accept(host);
+            if (host.isOrphan()) {
+                hosts.remove(hostId);
             } else {
-                hostsToMod.add(h);
+                hosts.put(hostId, host);
             }
+        } finally {
+            lock.unlock();
         }
     }
 
     private void linkRemoved(DataObjectIdentifier<Link> iiLink, Link linkRemoved) {
         LOG.trace("linkRemoved");
-        List<Host> hostsToMod = new ArrayList<>();
-        List<Host> hostsToRem = new ArrayList<>();
-        synchronized (hosts) {
-            removeLinksFromHosts(hostsToMod, hostsToRem, linkRemoved);
-            hosts.removeAll(hostsToRem);
-            hosts.putAll(hostsToMod);
-        }
+        removeLinksFromHosts(linkRemoved);
     }
 
     private void writeDataToDataStore(List<Link> linksToAdd, List<Link> linksToRemove) {
@@ -357,7 +527,7 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
             for (final Link l : linksToAdd) {
                 final var lIID = Utilities.buildLinkIID(l.key(), topologyId);
                 LOG.trace("Writing link from MD_SAL: {}", lIID.toString());
-                opProcessor.enqueueOperation(
+                opProcessor.enqueueOperation(lIID,
                     tx -> tx.mergeParentStructureMerge(LogicalDatastoreType.OPERATIONAL, lIID, l));
             }
         }
@@ -365,7 +535,7 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
             for (Link l : linksToRemove) {
                 final var lIID = Utilities.buildLinkIID(l.key(), topologyId);
                 LOG.trace("Removing link from MD_SAL: {}", lIID.toString());
-                opProcessor.enqueueOperation(tx -> tx.delete(LogicalDatastoreType.OPERATIONAL,  lIID));
+                opProcessor.enqueueOperation(lIID, tx -> tx.delete(LogicalDatastoreType.OPERATIONAL,  lIID));
             }
         }
     }
@@ -381,20 +551,31 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
         int numHostsPurged = 0;
         final long nowInMillis = System.currentTimeMillis();
         final long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(nowInMillis);
-        // iterate through all hosts in the local cache
-        for (Host h : hosts.values()) {
-            final HostNode hn = h.getHostNode().augmentation(HostNode.class);
-            if (hn == null) {
-                LOG.warn("Encountered non-host node {} in hosts during purge", h);
-            } else if (hn.getAddresses() != null) {
-                boolean purgeHosts = false;
-                // if the node is a host and has addresses, check to see if it's been seen recently
-                purgeHosts = hostReadyForPurge(hn, nowInSeconds,hostsPurgeAgeInSeconds);
-                if (purgeHosts) {
-                    numHostsPurged = removeHosts(h, numHostsPurged);
+        // only the hosts not seen in the purge age are candidates, they are checked again under their lock
+        final long notSeenSince = TimeUnit.SECONDS.toMillis(nowInSeconds - hostsPurgeAgeInSeconds + 1);
+        for (HostId hostId : hosts.getHostIdsNotSeenSince(notSeenSince)) {
+            final Lock lock = hostLocks.get(hostId);
+            lock.lock();
+            try {
+                final Host h = hosts.get(hostId);
+                if (h == null) {
+                    continue;
                 }
-            } else {
-                LOG.warn("Encountered host node {} with no address in hosts during purge", hn);
+                final HostNode hn = h.getHostNode().augmentation(HostNode.class);
+                if (hn == null) {
+                    LOG.warn("Encountered non-host node {} in hosts during purge", h);
+                } else if (hn.getAddresses() != null) {
+                    boolean purgeHosts = false;
+                    // if the node is a host and has addresses, check to see if it's been seen recently
+                    purgeHosts = hostReadyForPurge(hn, nowInSeconds,hostsPurgeAgeInSeconds);
+                    if (purgeHosts) {
+                        numHostsPurged = removeHosts(h, numHostsPurged);
+                    }
+                } else {
+                    LOG.warn("Encountered host node {} with no address in hosts during purge", hn);
+                }
+            } finally {
+                lock.unlock();
             }
         }
         LOG.debug("Number of purged hosts during current purge interval - {}. ", numHostsPurged);
@@ -450,24 +631,41 @@ public class HostTrackerImpl implements DataTreeChangeListener<DataObject> {
      */
     private void removeAssociatedLinksFromHosts(final Host host) {
         if (host.getId() != null) {
-            List<Link> linksToRemove = new ArrayList<>();
-            for (Link link: links.values()) {
-                if (link.toString().contains(host.getId().getValue())) {
-                    linksToRemove.add(link);
-                }
-            }
-            links.removeAll(linksToRemove);
+            links.removeAll(links.linksOf(host.getId()));
         } else {
             LOG.warn("Encountered host with no id , Unexpected host id {}. ", host);
         }
     }
 
+    private void registerStatistics() {
+        try {
+            final ObjectName name = new ObjectName(STATISTICS_MBEAN_NAME);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(opProcessor.getStatistics(), name);
+            statisticsName = name;
+        } catch (JMException e) {
+            LOG.warn("Failed to register host tracker statistics with JMX", e);
+        }
+    }
+
     public void close() {
+        if (statisticsName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(statisticsName);
+            } catch (JMException e) {
+                LOG.warn("Failed to unregister host tracker statistics from JMX", e);
+            }
+            statisticsName = null;
+        }
         processorThread.interrupt();
+        this.nodeConnectorListenerRegistration.close();
         this.addrsNodeListenerRegistration.close();
         this.hostNodeListenerRegistration.close();
         this.linkNodeListenerRegistration.close();
         this.exec.shutdownNow();
+        this.linkExec.shutdownNow();
+        for (ExecutorService observationExec : observationExecs) {
+            observationExec.shutdownNow();
+        }
         this.hosts.clear();
     }
 }
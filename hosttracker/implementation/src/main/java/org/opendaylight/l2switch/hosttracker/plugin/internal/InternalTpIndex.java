@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014 André Martins, Colin Dixon, Evan Zeller and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.hosttracker.plugin.internal;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.opendaylight.l2switch.hosttracker.plugin.inventory.Host;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+
+/**
+ * InternalTpIndex records the termination points whose node connectors are
+ * internal, with the number of links making them so: the source of a link
+ * not leading to a host and the destination of a link not coming from a
+ * host. Links have to be added and removed in the order they change in the
+ * topology, lookups may happen concurrently.
+ */
+final class InternalTpIndex {
+    private final ConcurrentMap<TpId, Integer> internalTpIds = new ConcurrentHashMap<>();
+
+    /**
+     * Records a link added to the topology.
+     *
+     * @param link the link added
+     */
+    void addLink(Link link) {
+        final TpId sourceTp = link.getSource().getSourceTp();
+        final TpId destTp = link.getDestination().getDestTp();
+        if (!destTp.getValue().startsWith(Host.NODE_PREFIX)) {
+            internalTpIds.merge(sourceTp, 1, Integer::sum);
+        }
+        if (!sourceTp.getValue().startsWith(Host.NODE_PREFIX)) {
+            internalTpIds.merge(destTp, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Records a link removed from the topology. Counts never drop below zero,
+     * a termination point is dropped along with its last link.
+     *
+     * @param link the link removed
+     */
+    void removeLink(Link link) {
+        final TpId sourceTp = link.getSource().getSourceTp();
+        final TpId destTp = link.getDestination().getDestTp();
+        if (!destTp.getValue().startsWith(Host.NODE_PREFIX)) {
+            decrement(sourceTp);
+        }
+        if (!sourceTp.getValue().startsWith(Host.NODE_PREFIX)) {
+            decrement(destTp);
+        }
+    }
+
+    /**
+     * Tells whether a termination point is the end of a link to a switch.
+     *
+     * @param tpId the termination point
+     * @return true if at least one link makes it internal
+     */
+    boolean isInternal(TpId tpId) {
+        return internalTpIds.containsKey(tpId);
+    }
+
+    private void decrement(TpId tpId) {
+        internalTpIds.computeIfPresent(tpId, (key, count) -> count > 1 ? count - 1 : null);
+    }
+}
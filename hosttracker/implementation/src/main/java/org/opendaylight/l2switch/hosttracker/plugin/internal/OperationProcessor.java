@@ -9,46 +9,59 @@ package org.opendaylight.l2switch.hosttracker.plugin.internal;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.MoreExecutors;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import org.opendaylight.mdsal.binding.api.DataBroker;
 import org.opendaylight.mdsal.binding.api.ReadWriteTransaction;
 import org.opendaylight.mdsal.binding.api.TransactionChain;
-import org.opendaylight.mdsal.common.api.OptimisticLockFailedException;
+import org.opendaylight.yangtools.binding.DataObjectIdentifier;
 import org.opendaylight.yangtools.yang.common.Empty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-final class OperationProcessor implements AutoCloseable, FutureCallback<Empty>, Runnable {
+/**
+ * Applies the host tracker operations to the datastore, in transactions of a transaction chain.
+ *
+ * <p>
+ * Operations are applied in the order they are enqueued. A later operation on a path drops the one still queued for
+ * it and takes its place at the tail of the queue, so that it is still applied after the operations enqueued before
+ * it. The number of operations per transaction adapts to the commit latency, growing while full transactions commit
+ * quickly and shrinking once they take longer than {@link #TARGET_COMMIT_NANOS}, and at most
+ * {@link #MAX_IN_FLIGHT} transactions are committing at any time. Producers wait once {@link #QUEUE_DEPTH}
+ * operations are queued.
+ */
+final class OperationProcessor implements AutoCloseable, Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(OperationProcessor.class);
-    private static final int NUM_RETRY_SUBMIT = 2;
-    private static final int OPS_PER_CHAIN = 256;
-    private static final int QUEUE_DEPTH = 512;
+    private static final int MIN_OPS_PER_TX = 16;
+    private static final int INITIAL_OPS_PER_TX = 256;
+    private static final int MAX_OPS_PER_TX = 4096;
+    private static final long TARGET_COMMIT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final int QUEUE_DEPTH = 8192;
 
-    private final BlockingQueue<HostTrackerOperation> queue = new LinkedBlockingQueue<>(QUEUE_DEPTH);
+    private final BlockingQueue<PendingOperation> queue = new LinkedBlockingQueue<>(QUEUE_DEPTH);
+    private final ConcurrentMap<DataObjectIdentifier<?>, PendingOperation> pendingOps = new ConcurrentHashMap<>();
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
     private final AtomicReference<TransactionChain> transactionChain = new AtomicReference<>();
+    private final List<Runnable> chainFailureListeners = new CopyOnWriteArrayList<>();
+    private final OperationProcessorStatistics statistics = new OperationProcessorStatistics(this);
     private final DataBroker dataBroker;
+    private volatile int opsPerTx = INITIAL_OPS_PER_TX;
 
     OperationProcessor(final DataBroker dataBroker) {
         this.dataBroker = requireNonNull(dataBroker);
-
-        final var chain = dataBroker.createTransactionChain();
-        transactionChain.set(chain);
-        chain.addCallback(this);
-    }
-
-    @Override
-    public void onFailure(Throwable cause) {
-        chainFailure();
-    }
-
-    @Override
-    public void onSuccess(Empty result) {
-        // no-op
+        transactionChain.set(newTransactionChain());
     }
 
     @Override
@@ -56,21 +69,19 @@ final class OperationProcessor implements AutoCloseable, FutureCallback<Empty>,
         boolean done = false;
         while (!done) {
             try {
-                HostTrackerOperation op = queue.take();
+                final PendingOperation first = queue.take();
+                inFlight.acquire();
                 final TransactionChain txChain = transactionChain.get();
                 if (txChain == null) {
+                    inFlight.release();
                     break;
                 }
-
-                ReadWriteTransaction tx = txChain.newReadWriteTransaction();
-                int ops = 0;
-                while (op != null && ops < OPS_PER_CHAIN) {
-                    op.applyOperation(tx);
-                    ops += 1;
-                    op = queue.poll();
+                try {
+                    applyOperations(txChain, first);
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to apply operations", e);
+                    inFlight.release();
                 }
-
-                submitTransaction(tx, NUM_RETRY_SUBMIT);
             } catch (InterruptedException e) {
                 done = true;
             }
@@ -78,69 +89,203 @@ final class OperationProcessor implements AutoCloseable, FutureCallback<Empty>,
         clearQueue();
     }
 
+    /**
+     * Applies the given operation and the ones queued after it, up to the current number of operations per
+     * transaction, in a transaction of the given chain and submits it.
+     */
+    private void applyOperations(final TransactionChain txChain, final PendingOperation first) {
+        final ReadWriteTransaction tx = txChain.newReadWriteTransaction();
+        final int maxOps = opsPerTx;
+        int ops = 0;
+        try {
+            PendingOperation pending = first;
+            while (pending != null) {
+                final HostTrackerOperation op = pending.take();
+                if (op != null) {
+                    pendingOps.remove(pending.path, pending);
+                    op.applyOperation(tx);
+                    ops += 1;
+                }
+                pending = ops < maxOps ? queue.poll() : null;
+            }
+        } catch (RuntimeException e) {
+            tx.cancel();
+            throw e;
+        }
+
+        if (ops > 0) {
+            submitTransaction(txChain, tx, ops, System.nanoTime());
+        } else {
+            // the operations have been replaced or cleared after a chain failure
+            tx.cancel();
+            inFlight.release();
+        }
+    }
+
     @Override
-    public void close() {
+    public synchronized void close() {
         final TransactionChain txChain = transactionChain.getAndSet(null);
         if (txChain != null) {
             txChain.close();
         }
     }
 
-    private void chainFailure() {
-        try {
-            final var nextChain = dataBroker.createTransactionChain();
-            final var prevChain = transactionChain.getAndSet(nextChain);
-            nextChain.addCallback(this);
-            if (prevChain != null) {
-                prevChain.close();
+    OperationProcessorStatistics getStatistics() {
+        return statistics;
+    }
+
+    int queueDepth() {
+        return queue.size();
+    }
+
+    int transactionsInFlight() {
+        return MAX_IN_FLIGHT - inFlight.availablePermits();
+    }
+
+    int batchSize() {
+        return opsPerTx;
+    }
+
+    /**
+     * Registers a listener run after a chain failure, once the queued operations have been dropped. The operations
+     * of the failed chain which have not been committed are lost, so the listener has to forget what it has enqueued.
+     *
+     * @param listener the listener
+     */
+    void addChainFailureListener(final Runnable listener) {
+        chainFailureListeners.add(requireNonNull(listener));
+    }
+
+    private TransactionChain newTransactionChain() {
+        final var chain = dataBroker.createTransactionChain();
+        chain.addCallback(new FutureCallback<Empty>() {
+            @Override
+            public void onSuccess(Empty result) {
+                // no-op
             }
+
+            @Override
+            public void onFailure(Throwable cause) {
+                chainFailure(chain);
+            }
+        });
+        return chain;
+    }
+
+    /**
+     * Replaces the given chain after its failure. The chain and each of its failed transactions report the failure,
+     * only the first report replaces the chain, the later ones finding it replaced already.
+     *
+     * @param failedChain the chain which failed
+     */
+    private synchronized void chainFailure(final TransactionChain failedChain) {
+        if (transactionChain.get() != failedChain) {
+            LOG.debug("Chain {} already replaced", failedChain);
+            return;
+        }
+        try {
+            transactionChain.set(newTransactionChain());
+            failedChain.close();
             clearQueue();
+            chainFailureListeners.forEach(Runnable::run);
         } catch (IllegalStateException e) {
             LOG.warn("Failed to close chain", e);
         }
     }
 
-    public void enqueueOperation(HostTrackerOperation op) {
-        try {
-            queue.put(op);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+    /**
+     * Enqueues an operation on the given path. If an operation on the same path is still queued, it is dropped and
+     * this one is enqueued at the tail of the queue. The caller waits while the queue is full.
+     *
+     * @param path the path the operation writes or deletes
+     * @param op the operation
+     */
+    public void enqueueOperation(DataObjectIdentifier<?> path, HostTrackerOperation op) {
+        statistics.operationEnqueued();
+        final PendingOperation pending = new PendingOperation(path, op);
+        final PendingOperation replaced = pendingOps.put(path, pending);
+        if (replaced != null && replaced.take() != null) {
+            statistics.operationCoalesced();
+        }
+        if (!queue.offer(pending)) {
+            final long start = System.nanoTime();
+            try {
+                queue.put(pending);
+            } catch (InterruptedException e) {
+                pendingOps.remove(path, pending);
+                Thread.currentThread().interrupt();
+            }
+            statistics.producerWaited(System.nanoTime() - start);
         }
     }
 
-    public void submitTransaction(final ReadWriteTransaction tx, final int tries) {
+    /**
+     * Commits a transaction. A failed transaction is not committed again: its chain has failed along with it, and
+     * the chain failure listeners write again what was lost on it.
+     */
+    public void submitTransaction(final TransactionChain txChain, final ReadWriteTransaction tx, final int ops,
+            final long start) {
         Futures.addCallback(tx.commit(), new FutureCallback<Object>() {
             @Override
             public void onSuccess(Object obj) {
                 LOG.trace("tx {} succeeded", tx.getIdentifier());
+                inFlight.release();
+                statistics.transactionCommitted(ops);
+                adaptBatchSize(ops, System.nanoTime() - start);
             }
 
             @Override
             public void onFailure(Throwable failure) {
-                if (failure instanceof OptimisticLockFailedException) {
-                    if (tries - 1 > 0) {
-                        LOG.warn("tx {} failed, retrying", tx.getIdentifier());
-                        // do retry
-                        submitTransaction(tx, tries - 1);
-                    } else {
-                        LOG.warn("tx {} failed, out of retries", tx.getIdentifier());
-                        // out of retries
-                        chainFailure();
-                    }
-                } else {
-                    // failed due to another type of
-                    // TransactionCommitFailedException.
-                    LOG.warn("tx {} failed: {}", tx.getIdentifier(), failure.getMessage());
-                    chainFailure();
-                }
+                LOG.warn("tx {} failed: {}", tx.getIdentifier(), failure.getMessage());
+                inFlight.release();
+                statistics.transactionFailed();
+                chainFailure(txChain);
             }
         }, MoreExecutors.directExecutor());
     }
 
-    private void clearQueue() {
-        while (!queue.isEmpty()) {
-            queue.poll();
+    /**
+     * Halves the number of operations per transaction when a commit took longer than the target, doubles it when a
+     * full transaction committed in less than half of it.
+     */
+    @VisibleForTesting
+    void adaptBatchSize(final int ops, final long commitNanos) {
+        final int current = opsPerTx;
+        if (commitNanos > TARGET_COMMIT_NANOS) {
+            opsPerTx = Math.max(MIN_OPS_PER_TX, current / 2);
+        } else if (ops >= current && commitNanos < TARGET_COMMIT_NANOS / 2) {
+            opsPerTx = Math.min(MAX_OPS_PER_TX, current * 2);
+        }
+        if (opsPerTx != current) {
+            LOG.debug("Commit of {} operations took {}us, now {} operations per transaction", ops,
+                TimeUnit.NANOSECONDS.toMicros(commitNanos), opsPerTx);
         }
     }
 
+    private void clearQueue() {
+        queue.clear();
+        pendingOps.clear();
+    }
+
+    /**
+     * An operation waiting in the queue, taken either by the processor or by a later operation on the same path.
+     */
+    private static final class PendingOperation {
+        private final DataObjectIdentifier<?> path;
+        private final AtomicReference<HostTrackerOperation> op;
+
+        PendingOperation(final DataObjectIdentifier<?> path, final HostTrackerOperation op) {
+            this.path = path;
+            this.op = new AtomicReference<>(op);
+        }
+
+        /**
+         * Takes the operation.
+         *
+         * @return the operation, or null if it has been taken already.
+         */
+        HostTrackerOperation take() {
+            return op.getAndSet(null);
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2015 Evan Zeller and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.hosttracker.plugin.internal;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * OperationProcessorStatistics counts the operations the host tracker writes
+ * to the datastore, those coalesced with a later operation on the same path,
+ * how often producers had to wait for the queue, and the address observations
+ * dropped before being processed. The counters are updated without locking
+ * and read through JMX.
+ */
+public final class OperationProcessorStatistics implements OperationProcessorStatisticsMXBean {
+    private final LongAdder operationsEnqueued = new LongAdder();
+    private final LongAdder operationsCoalesced = new LongAdder();
+    private final LongAdder producerWaits = new LongAdder();
+    private final LongAdder producerWaitNanos = new LongAdder();
+    private final LongAdder transactionsCommitted = new LongAdder();
+    private final LongAdder operationsCommitted = new LongAdder();
+    private final LongAdder transactionsFailed = new LongAdder();
+    private final LongAdder observationsDropped = new LongAdder();
+    private final OperationProcessor processor;
+
+    OperationProcessorStatistics(final OperationProcessor processor) {
+        this.processor = requireNonNull(processor);
+    }
+
+    void operationEnqueued() {
+        operationsEnqueued.increment();
+    }
+
+    void operationCoalesced() {
+        operationsCoalesced.increment();
+    }
+
+    void producerWaited(long nanos) {
+        producerWaits.increment();
+        producerWaitNanos.add(nanos);
+    }
+
+    void transactionCommitted(int operations) {
+        transactionsCommitted.increment();
+        operationsCommitted.add(operations);
+    }
+
+    void transactionFailed() {
+        transactionsFailed.increment();
+    }
+
+    void observationsDropped(int observations) {
+        observationsDropped.add(observations);
+    }
+
+    @Override
+    public long getOperationsEnqueued() {
+        return operationsEnqueued.sum();
+    }
+
+    @Override
+    public long getOperationsCoalesced() {
+        return operationsCoalesced.sum();
+    }
+
+    @Override
+    public long getProducerWaits() {
+        return producerWaits.sum();
+    }
+
+    @Override
+    public long getProducerWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(producerWaitNanos.sum());
+    }
+
+    @Override
+    public long getTransactionsCommitted() {
+        return transactionsCommitted.sum();
+    }
+
+    @Override
+    public long getOperationsCommitted() {
+        return operationsCommitted.sum();
+    }
+
+    @Override
+    public long getTransactionsFailed() {
+        return transactionsFailed.sum();
+    }
+
+    @Override
+    public long getObservationsDropped() {
+        return observationsDropped.sum();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return processor.queueDepth();
+    }
+
+    @Override
+    public int getTransactionsInFlight() {
+        return processor.transactionsInFlight();
+    }
+
+    @Override
+    public int getBatchSize() {
+        return processor.batchSize();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2015 Evan Zeller and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.hosttracker.plugin.internal;
+
+/**
+ * The host tracker datastore write counters, as exposed through JMX.
+ */
+public interface OperationProcessorStatisticsMXBean {
+
+    long getOperationsEnqueued();
+
+    long getOperationsCoalesced();
+
+    long getProducerWaits();
+
+    long getProducerWaitMillis();
+
+    long getTransactionsCommitted();
+
+    long getOperationsCommitted();
+
+    long getTransactionsFailed();
+
+    long getObservationsDropped();
+
+    int getQueueDepth();
+
+    int getTransactionsInFlight();
+
+    int getBatchSize();
+}
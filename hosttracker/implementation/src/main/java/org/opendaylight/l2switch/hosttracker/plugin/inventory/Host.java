@@ -12,9 +12,11 @@ import static java.util.Objects.requireNonNull;
 import java.security.InvalidParameterException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.opendaylight.l2switch.hosttracker.plugin.util.Compare;
 import org.opendaylight.l2switch.hosttracker.plugin.util.Utilities;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.Addresses;
@@ -25,7 +27,9 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.Host
 import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.host.AttachmentPoints;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.host.AttachmentPointsBuilder;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.host.tracker.rev140624.host.AttachmentPointsKey;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorKey;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
 import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
@@ -50,6 +54,12 @@ public class Host {
     private final List<AttachmentPointsBuilder> attachmentPointsBuilders = new ArrayList<>();
     private final HostNodeBuilder hostNodeBuilder = new HostNodeBuilder();
     private final NodeBuilder nodeBuilder;
+    private final HostId hostId;
+
+    /**
+     * The Node built from the builders above, null once they have changed until it is built again.
+     */
+    private volatile Node hostNode;
 
     public static Host createHost(Node node) {
         HostNode hostNode = node.augmentation(HostNode.class);
@@ -57,7 +67,7 @@ public class Host {
     }
 
     public Host(HostId hostId, Map<AddressesKey, Addresses> addrs, Map<AttachmentPointsKey, AttachmentPoints> aps) {
-        requireNonNull(hostId);
+        this.hostId = requireNonNull(hostId);
         hostNodeBuilder.setAddresses(addrs);
         hostNodeBuilder.setId(hostId);
         for (AttachmentPoints ap : aps.values()) {
@@ -67,7 +77,7 @@ public class Host {
     }
 
     public Host(Addresses addrs, NodeConnector nodeConnector) throws InvalidParameterException {
-        HostId hostId = requireNonNull(createHostId(addrs),
+        hostId = requireNonNull(createHostId(addrs),
             "This host doesn't contain a valid MAC address to assign a valid HostId");
         hostNodeBuilder.setAddresses(BindingMap.of(addrs));
         hostNodeBuilder.setId(hostId);
@@ -79,14 +89,29 @@ public class Host {
         nodeBuilder = createNodeBuilder(hostNodeBuilder, attachmentPointsBuilders);
     }
 
-    public synchronized Node getHostNode() {
-        final var attachmentPointsMap = new HashMap<AttachmentPointsKey, AttachmentPoints>();
-        for (var apb : attachmentPointsBuilders) {
-            AttachmentPoints builtAttachmentPoints = apb.build();
-            attachmentPointsMap.put(builtAttachmentPoints.key(), builtAttachmentPoints);
+    /**
+     * Returns this Host as a Node. The Node is only built again once this
+     * Host's addresses or attachment points have changed, until then the
+     * same Node is returned without locking.
+     *
+     * @return this Host as a Node.
+     */
+    public Node getHostNode() {
+        final Node node = hostNode;
+        return node != null ? node : buildHostNode();
+    }
+
+    private synchronized Node buildHostNode() {
+        if (hostNode == null) {
+            final var attachmentPointsMap = new HashMap<AttachmentPointsKey, AttachmentPoints>();
+            for (var apb : attachmentPointsBuilders) {
+                AttachmentPoints builtAttachmentPoints = apb.build();
+                attachmentPointsMap.put(builtAttachmentPoints.key(), builtAttachmentPoints);
+            }
+            hostNodeBuilder.setAttachmentPoints(attachmentPointsMap);
+            hostNode = nodeBuilder.addAugmentation(hostNodeBuilder.build()).build();
         }
-        hostNodeBuilder.setAttachmentPoints(attachmentPointsMap);
-        return nodeBuilder.addAugmentation(hostNodeBuilder.build()).build();
+        return hostNode;
     }
 
     /**
@@ -151,8 +176,45 @@ public class Host {
      *
      * @return this HostId.
      */
-    public synchronized HostId getId() {
-        return hostNodeBuilder.getId();
+    public HostId getId() {
+        return hostId;
+    }
+
+    /**
+     * Returns when this Host was last seen, that is the most recent last seen
+     * timestamp of its addresses.
+     *
+     * @return the last seen timestamp in milliseconds, 0 if this Host has no timestamped address.
+     */
+    public synchronized long getLastSeen() {
+        long lastSeen = 0;
+        final Map<AddressesKey, Addresses> addresses = hostNodeBuilder.getAddresses();
+        if (addresses != null) {
+            for (Addresses addrs : addresses.values()) {
+                final Long addrsLastSeen = addrs.getLastSeen();
+                if (addrsLastSeen != null && addrsLastSeen > lastSeen) {
+                    lastSeen = addrsLastSeen;
+                }
+            }
+        }
+        return lastSeen;
+    }
+
+    /**
+     * Returns the TerminationPoints this Host is attached to, along with the
+     * corresponding TerminationPoints of this Host.
+     *
+     * @return the TpIds of this Host's AttachmentPoints and of their corresponding TerminationPoints.
+     */
+    public synchronized Set<TpId> getTpIds() {
+        final Set<TpId> tpIds = new HashSet<>();
+        for (AttachmentPointsBuilder apb : attachmentPointsBuilders) {
+            tpIds.add(apb.getTpId());
+            if (apb.getCorrespondingTp() != null) {
+                tpIds.add(apb.getCorrespondingTp());
+            }
+        }
+        return tpIds;
     }
 
     /**
@@ -162,18 +224,27 @@ public class Host {
      * @param dstNode Node that could have Host's AttachmentPoints.
      * @return A list of links containing a link from this Host's TerminationPoint to the given dstNode and vice-versa.
      */
-    public synchronized List<Link> createLinks(
+    public List<Link> createLinks(
             org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node dstNode) {
+        return createLinks(new NodeId(dstNode.getId().getValue()), dstNode.nonnullNodeConnector().keySet());
+    }
+
+    /**
+     * Creates links that have this Host's AttachmentPoints in the given
+     * NodeConnectors of a node.
+     *
+     * @param dstNodeId the id of the node the NodeConnectors belong to.
+     * @param dstNodeConnectors the keys of NodeConnectors that could be Host's AttachmentPoints.
+     * @return A list of links containing a link from this Host's TerminationPoint to the given node and vice-versa.
+     */
+    public synchronized List<Link> createLinks(NodeId dstNodeId, Set<NodeConnectorKey> dstNodeConnectors) {
         for (AttachmentPointsBuilder apb : attachmentPointsBuilders) {
-            if (apb.getActive()) {
-                for (NodeConnector nc : dstNode.nonnullNodeConnector().values()) {
-                    if (nc.getId().getValue().equals(apb.getTpId().getValue())) {
-                        return Utilities.createLinks(nodeBuilder.getNodeId(),
-                                apb.getCorrespondingTp(),
-                                new NodeId(dstNode.getId().getValue()),
-                                apb.getTpId());
-                    }
-                }
+            if (apb.getActive() && dstNodeConnectors.contains(
+                    new NodeConnectorKey(new NodeConnectorId(apb.getTpId().getValue())))) {
+                return Utilities.createLinks(nodeBuilder.getNodeId(),
+                        apb.getCorrespondingTp(),
+                        dstNodeId,
+                        apb.getTpId());
             }
         }
         return null;
@@ -224,6 +295,7 @@ public class Host {
             }
             this.attachmentPointsBuilders.add(newAPs);
         }
+        hostNode = null;
     }
 
     /**
@@ -236,7 +308,7 @@ public class Host {
         LOG.debug("Setting attachment points {} to inactive state", apb);
         for (AttachmentPointsBuilder apbi : attachmentPointsBuilders) {
             if (apbi.key().equals(apb.key())) {
-                apbi.setActive(Boolean.FALSE);
+                deactivate(apbi);
             }
         }
     }
@@ -251,11 +323,18 @@ public class Host {
         LOG.debug("Setting termination point {} to inactive state", tp);
         for (AttachmentPointsBuilder apbi : attachmentPointsBuilders) {
             if (apbi.getCorrespondingTp().equals(tp)) {
-                apbi.setActive(Boolean.FALSE);
+                deactivate(apbi);
             }
         }
     }
 
+    private void deactivate(AttachmentPointsBuilder apb) {
+        if (!Boolean.FALSE.equals(apb.getActive())) {
+            apb.setActive(Boolean.FALSE);
+            hostNode = null;
+        }
+    }
+
     /**
      * If a host does not have any AttachmentPoints active it means it is an
      * orphan.
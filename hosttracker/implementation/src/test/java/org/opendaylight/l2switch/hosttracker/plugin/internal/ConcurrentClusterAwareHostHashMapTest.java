@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014 André Martins, Colin Dixon, Evan Zeller and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.hosttracker.plugin.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.util.concurrent.FutureCallback;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opendaylight.l2switch.hosttracker.plugin.inventory.Host;
+import org.opendaylight.mdsal.binding.api.DataBroker;
+import org.opendaylight.mdsal.binding.api.TransactionChain;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.IpAddress;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.inet.types.rev130715.Ipv4Address;
+import org.opendaylight.yang.gen.v1.urn.ietf.params.xml.ns.yang.ietf.yang.types.rev130715.MacAddress;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.address.tracker.rev140617.address.node.connector.AddressesBuilder;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeConnectorId;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnector;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.node.NodeConnectorBuilder;
+import org.opendaylight.yangtools.yang.common.Empty;
+import org.opendaylight.yangtools.yang.common.Uint64;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrentClusterAwareHostHashMapTest {
+    private static final NodeConnector NODE_CONNECTOR = new NodeConnectorBuilder()
+        .setId(new NodeConnectorId("openflow:1:1"))
+        .build();
+
+    @Mock
+    private DataBroker dataBroker;
+    @Mock
+    private TransactionChain transactionChain;
+    @Captor
+    private ArgumentCaptor<FutureCallback<Empty>> chainCallback;
+
+    private OperationProcessor opProcessor;
+    private ConcurrentClusterAwareHostHashMap hosts;
+
+    @BeforeEach
+    void beforeEach() {
+        doReturn(transactionChain).when(dataBroker).createTransactionChain();
+        opProcessor = new OperationProcessor(dataBroker);
+        verify(transactionChain).addCallback(chainCallback.capture());
+        hosts = new ConcurrentClusterAwareHostHashMap(opProcessor, "flow:1", 60000);
+    }
+
+    @Test
+    void putUnchangedTest() {
+        final Host host = host(1000L);
+        hosts.put(host.getId(), host);
+        hosts.put(host.getId(), host);
+        // Seen again within the last seen update interval
+        final Host seenAgain = host(2000L);
+        hosts.put(seenAgain.getId(), seenAgain);
+
+        assertEquals(1, opProcessor.getStatistics().getOperationsEnqueued());
+        assertEquals(1, opProcessor.queueDepth());
+    }
+
+    @Test
+    void putChangedTest() {
+        final Host host = host(1000L);
+        hosts.put(host.getId(), host);
+        final Host seenLater = host(1000L + 60000);
+        hosts.put(seenLater.getId(), seenLater);
+
+        assertEquals(2, opProcessor.getStatistics().getOperationsEnqueued());
+    }
+
+    @Test
+    void putAfterChainFailureTest() {
+        final Host host = host(1000L);
+        hosts.put(host.getId(), host);
+
+        // The failure drops the queued merge, the unchanged host has to be written again
+        chainCallback.getValue().onFailure(new IllegalStateException("chain failed"));
+        assertEquals(0, opProcessor.queueDepth());
+
+        hosts.put(host.getId(), host);
+        assertEquals(2, opProcessor.getStatistics().getOperationsEnqueued());
+        assertEquals(1, opProcessor.queueDepth());
+    }
+
+    private static Host host(long lastSeen) {
+        return new Host(new AddressesBuilder()
+            .setId(Uint64.ONE)
+            .setIp(new IpAddress(new Ipv4Address("10.0.0.1")))
+            .setMac(new MacAddress("00:00:00:00:00:01"))
+            .setFirstSeen(1000L)
+            .setLastSeen(lastSeen)
+            .build(), NODE_CONNECTOR);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014 André Martins, Colin Dixon, Evan Zeller and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.hosttracker.plugin.internal;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.LinkId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.TpId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.DestinationBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.link.attributes.SourceBuilder;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Link;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.LinkBuilder;
+
+class InternalTpIndexTest {
+    private static final TpId SWITCH_1_PORT_1 = new TpId("openflow:1:1");
+    private static final TpId SWITCH_2_PORT_1 = new TpId("openflow:2:1");
+    private static final TpId SWITCH_3_PORT_1 = new TpId("openflow:3:1");
+    private static final TpId HOST_TP = new TpId("host:ba:43:52:ce:09:f4");
+
+    private final InternalTpIndex index = new InternalTpIndex();
+
+    @Test
+    void switchLinkTest() {
+        index.addLink(link(SWITCH_1_PORT_1, SWITCH_2_PORT_1));
+        assertTrue(index.isInternal(SWITCH_1_PORT_1));
+        assertTrue(index.isInternal(SWITCH_2_PORT_1));
+
+        index.removeLink(link(SWITCH_1_PORT_1, SWITCH_2_PORT_1));
+        assertFalse(index.isInternal(SWITCH_1_PORT_1));
+        assertFalse(index.isInternal(SWITCH_2_PORT_1));
+    }
+
+    @Test
+    void hostLinkTest() {
+        // The links between a host and its switch leave the switch side external
+        index.addLink(link(HOST_TP, SWITCH_1_PORT_1));
+        index.addLink(link(SWITCH_1_PORT_1, HOST_TP));
+        assertFalse(index.isInternal(SWITCH_1_PORT_1));
+    }
+
+    @Test
+    void sharedTerminationPointTest() {
+        index.addLink(link(SWITCH_1_PORT_1, SWITCH_2_PORT_1));
+        index.addLink(link(SWITCH_1_PORT_1, SWITCH_3_PORT_1));
+
+        // Still internal as long as one of its links is left
+        index.removeLink(link(SWITCH_1_PORT_1, SWITCH_2_PORT_1));
+        assertTrue(index.isInternal(SWITCH_1_PORT_1));
+        assertFalse(index.isInternal(SWITCH_2_PORT_1));
+
+        index.removeLink(link(SWITCH_1_PORT_1, SWITCH_3_PORT_1));
+        assertFalse(index.isInternal(SWITCH_1_PORT_1));
+    }
+
+    @Test
+    void removeUnknownLinkTest() {
+        // Removing a link which was never added does not leave a negative count behind
+        index.removeLink(link(SWITCH_1_PORT_1, SWITCH_2_PORT_1));
+        assertFalse(index.isInternal(SWITCH_1_PORT_1));
+
+        index.addLink(link(SWITCH_1_PORT_1, SWITCH_2_PORT_1));
+        assertTrue(index.isInternal(SWITCH_1_PORT_1));
+    }
+
+    private static Link link(TpId sourceTp, TpId destTp) {
+        return new LinkBuilder()
+            .setLinkId(new LinkId(sourceTp.getValue() + "/" + destTp.getValue()))
+            .setSource(new SourceBuilder().setSourceNode(nodeId(sourceTp)).setSourceTp(sourceTp).build())
+            .setDestination(new DestinationBuilder().setDestNode(nodeId(destTp)).setDestTp(destTp).build())
+            .build();
+    }
+
+    private static NodeId nodeId(TpId tpId) {
+        final String value = tpId.getValue();
+        return new NodeId(value.startsWith("host:") ? value : value.substring(0, value.lastIndexOf(':')));
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2015 Evan Zeller and others.  All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.opendaylight.l2switch.hosttracker.plugin.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.util.concurrent.FluentFuture;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.opendaylight.l2switch.hosttracker.plugin.util.Utilities;
+import org.opendaylight.mdsal.binding.api.DataBroker;
+import org.opendaylight.mdsal.binding.api.ReadWriteTransaction;
+import org.opendaylight.mdsal.binding.api.TransactionChain;
+import org.opendaylight.mdsal.common.api.CommitInfo;
+import org.opendaylight.mdsal.common.api.OptimisticLockFailedException;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.NodeId;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.Node;
+import org.opendaylight.yang.gen.v1.urn.tbd.params.xml.ns.yang.network.topology.rev131021.network.topology.topology.NodeKey;
+import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+
+@ExtendWith(MockitoExtension.class)
+class OperationProcessorTest {
+    @Mock
+    private DataBroker dataBroker;
+    @Mock
+    private TransactionChain transactionChain;
+    @Mock
+    private ReadWriteTransaction transaction;
+    @Mock
+    private Runnable chainFailureListener;
+
+    private final List<String> applied = new CopyOnWriteArrayList<>();
+    private OperationProcessor opProcessor;
+    private Thread processorThread;
+
+    @BeforeEach
+    void beforeEach() {
+        doReturn(transactionChain).when(dataBroker).createTransactionChain();
+        opProcessor = new OperationProcessor(dataBroker);
+        processorThread = new Thread(opProcessor);
+    }
+
+    @AfterEach
+    void afterEach() throws InterruptedException {
+        processorThread.interrupt();
+        processorThread.join();
+        opProcessor.close();
+    }
+
+    @Test
+    void coalesceTest() {
+        doReturn(transaction).when(transactionChain).newReadWriteTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(transaction).commit();
+
+        opProcessor.enqueueOperation(path("host:1"), op("first host:1"));
+        opProcessor.enqueueOperation(path("host:2"), op("host:2"));
+        opProcessor.enqueueOperation(path("host:1"), op("second host:1"));
+        assertEquals(3, opProcessor.getStatistics().getOperationsEnqueued());
+        assertEquals(1, opProcessor.getStatistics().getOperationsCoalesced());
+
+        processorThread.start();
+        verify(transaction, timeout(5000)).commit();
+        // The replacing operation is still applied after the ones enqueued before it
+        assertEquals(List.of("host:2", "second host:1"), applied);
+    }
+
+    @Test
+    void adaptBatchSizeTest() {
+        assertEquals(256, opProcessor.batchSize());
+
+        // Only full transactions committing quickly grow the batches
+        opProcessor.adaptBatchSize(10, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(256, opProcessor.batchSize());
+        opProcessor.adaptBatchSize(256, TimeUnit.MILLISECONDS.toNanos(1));
+        assertEquals(512, opProcessor.batchSize());
+        opProcessor.adaptBatchSize(512, TimeUnit.MILLISECONDS.toNanos(40));
+        assertEquals(512, opProcessor.batchSize());
+
+        opProcessor.adaptBatchSize(10, TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(256, opProcessor.batchSize());
+        for (int i = 0; i < 10; i++) {
+            opProcessor.adaptBatchSize(10, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        assertEquals(16, opProcessor.batchSize());
+        for (int i = 0; i < 10; i++) {
+            opProcessor.adaptBatchSize(opProcessor.batchSize(), TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertEquals(4096, opProcessor.batchSize());
+    }
+
+    @Test
+    void inFlightLimitTest() {
+        final List<SettableFuture<CommitInfo>> commits = new CopyOnWriteArrayList<>();
+        doReturn(transaction).when(transactionChain).newReadWriteTransaction();
+        doAnswer(invocation -> {
+            final SettableFuture<CommitInfo> commit = SettableFuture.create();
+            commits.add(commit);
+            return FluentFuture.from(commit);
+        }).when(transaction).commit();
+        processorThread.start();
+
+        for (int i = 1; i <= 4; i++) {
+            opProcessor.enqueueOperation(path("host:" + i), op("host:" + i));
+            verify(transaction, timeout(5000).times(i)).commit();
+        }
+        assertEquals(4, opProcessor.transactionsInFlight());
+
+        // The fifth transaction waits for one of the four to commit
+        opProcessor.enqueueOperation(path("host:5"), op("host:5"));
+        verify(transactionChain, after(200).times(4)).newReadWriteTransaction();
+        assertEquals(4, opProcessor.transactionsInFlight());
+
+        commits.get(0).set(CommitInfo.empty());
+        verify(transaction, timeout(5000).times(5)).commit();
+        assertEquals(List.of("host:1", "host:2", "host:3", "host:4", "host:5"), applied);
+        assertEquals(1, opProcessor.getStatistics().getTransactionsCommitted());
+    }
+
+    @Test
+    void failedOperationTest() {
+        doReturn(transaction).when(transactionChain).newReadWriteTransaction();
+        doReturn(CommitInfo.emptyFluentFuture()).when(transaction).commit();
+        processorThread.start();
+
+        opProcessor.enqueueOperation(path("host:1"), tx -> {
+            throw new IllegalStateException("failed operation");
+        });
+        verify(transaction, timeout(5000)).cancel();
+
+        // The processor keeps going with the next operations
+        opProcessor.enqueueOperation(path("host:2"), op("host:2"));
+        verify(transaction, timeout(5000)).commit();
+        assertEquals(List.of("host:2"), applied);
+    }
+
+    @Test
+    void failedCommitTest() {
+        opProcessor.addChainFailureListener(chainFailureListener);
+        doReturn(transaction).when(transactionChain).newReadWriteTransaction();
+        doReturn(FluentFuture.from(Futures.immediateFailedFuture(new OptimisticLockFailedException("conflict"))))
+            .when(transaction).commit();
+        processorThread.start();
+
+        // The transaction is not committed again, its chain is replaced and the listeners write again what was lost
+        opProcessor.enqueueOperation(path("host:1"), op("host:1"));
+        verify(chainFailureListener, timeout(5000)).run();
+        verify(transaction, times(1)).commit();
+        verify(transactionChain).close();
+        assertEquals(1, opProcessor.getStatistics().getTransactionsFailed());
+    }
+
+    private HostTrackerOperation op(String name) {
+        return tx -> applied.add(name);
+    }
+
+    private static DataObjectIdentifier<Node> path(String nodeId) {
+        return Utilities.buildNodeIID(new NodeKey(new NodeId(nodeId)), "flow:1");
+    }
+}
@@ -25,6 +25,7 @@ public class L2SwitchMainProvider {
     private static final Logger LOG = LoggerFactory.getLogger(L2SwitchMainProvider.class);
     private Registration topoNodeListherReg;
     private Registration reactFlowWriterReg;
+    private InitialFlowWriter initialFlowWriter;
 
     private final DataBroker dataService;
     private final NotificationService notificationService;
@@ -54,7 +55,7 @@ public class L2SwitchMainProvider {
         // Write initial flows
         if (mainConfig.getIsInstallDropallFlow()) {
             LOG.info("L2Switch will install a dropall flow on each switch");
-            InitialFlowWriter initialFlowWriter = new InitialFlowWriter(rpcService.getRpc(AddFlow.class));
+            initialFlowWriter = new InitialFlowWriter(rpcService.getRpc(AddFlow.class));
             initialFlowWriter.setFlowTableId(mainConfig.getDropallFlowTableId());
             initialFlowWriter.setFlowPriority(mainConfig.getDropallFlowPriority());
             initialFlowWriter.setFlowIdleTimeout(mainConfig.getDropallFlowIdleTimeout());
@@ -85,6 +86,10 @@ public class L2SwitchMainProvider {
         if (topoNodeListherReg != null) {
             topoNodeListherReg.close();
         }
+
+        if (initialFlowWriter != null) {
+            initialFlowWriter.close();
+        }
         LOG.info("L2SwitchMain (instance {}) torn down.", this);
     }
 }
@@ -9,12 +9,16 @@ package org.opendaylight.l2switch.flow;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
-import java.util.HashSet;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
+import java.util.Map;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.opendaylight.mdsal.binding.api.DataBroker;
 import org.opendaylight.mdsal.binding.api.DataTreeChangeListener;
@@ -61,12 +65,21 @@ import org.slf4j.LoggerFactory;
  * Adds a flow, which drops all packets, on all switches.
  * Registers as ODL Inventory listener so that it can add flows once a new node i.e. switch is added.
  */
-public class InitialFlowWriter implements DataTreeChangeListener<Node> {
+public class InitialFlowWriter implements DataTreeChangeListener<Node>, AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(InitialFlowWriter.class);
     private static final String FLOW_ID_PREFIX = "L2switch-";
 
-    private final ExecutorService initialFlowExecutor = Executors.newCachedThreadPool();
+    // AddFlow requests outstanding at any time, and attempts made for each node
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    // Releases the thread delivering data tree changes, flows are programmed asynchronously from here
+    private final ScheduledExecutorService initialFlowExecutor = Executors.newScheduledThreadPool(1);
+    // Nodes waiting for their initial flows, in arrival order, with the attempt to be made next
+    private final Map<InstanceIdentifier<Node>, Integer> pendingNodes = new LinkedHashMap<>();
     private final AddFlow addFlow;
+    private int inFlight;
 
     private final AtomicLong flowIdInc = new AtomicLong();
     private final AtomicLong flowCookieInc = new AtomicLong(0x2b00000000000000L);
@@ -102,13 +115,17 @@ public class InitialFlowWriter implements DataTreeChangeListener<Node> {
 
     @Override
     public void onDataTreeChanged(final List<DataTreeModification<Node>> changes) {
-        final var nodeIds = new HashSet<InstanceIdentifier<?>>();
+        boolean added = false;
         for (var change : changes) {
             final var rootNode = change.getRootNode();
             switch (rootNode.modificationType()) {
                 case WRITE:
                     if (rootNode.dataBefore() == null) {
-                        nodeIds.add(change.path().toLegacy());
+                        final var nodeId = change.path().toLegacy();
+                        if (nodeId.firstKeyOf(Node.class).getId().getValue().contains("openflow:")) {
+                            enqueue(nodeId, 1);
+                            added = true;
+                        }
                     }
                     break;
                 default:
@@ -116,109 +133,160 @@ public class InitialFlowWriter implements DataTreeChangeListener<Node> {
             }
         }
 
-        if (!nodeIds.isEmpty()) {
-            initialFlowExecutor.execute(new InitialFlowWriterProcessor(nodeIds));
+        if (added) {
+            initialFlowExecutor.execute(this::addPendingInitialFlows);
         }
     }
 
+    @Override
+    public void close() {
+        initialFlowExecutor.shutdownNow();
+    }
+
+    private synchronized void enqueue(final InstanceIdentifier<Node> nodeId, final int attempt) {
+        pendingNodes.putIfAbsent(nodeId, attempt);
+    }
+
     /**
-     * A private class to process the node updated event in separate thread. Allows to release the
-     * thread that invoked the data node updated event. Avoids any thread lock it may cause.
+     * Picks the next node to program, unless too many requests are outstanding already.
      */
-    private class InitialFlowWriterProcessor implements Runnable {
-        private final Set<InstanceIdentifier<?>> nodeIds;
+    private synchronized Map.Entry<InstanceIdentifier<Node>, Integer> nextPendingNode() {
+        if (inFlight >= MAX_IN_FLIGHT || pendingNodes.isEmpty()) {
+            return null;
+        }
+        final var it = pendingNodes.entrySet().iterator();
+        final var next = it.next();
+        it.remove();
+        inFlight++;
+        return next;
+    }
 
-        InitialFlowWriterProcessor(final Set<InstanceIdentifier<?>> nodeIds) {
-            this.nodeIds = requireNonNull(nodeIds);
+    private synchronized void requestCompleted() {
+        inFlight--;
+    }
+
+    private void addPendingInitialFlows() {
+        for (var next = nextPendingNode(); next != null; next = nextPendingNode()) {
+            addInitialFlows(next.getKey(), next.getValue());
         }
+    }
 
-        @Override
-        public void run() {
-            for (var nodeId : nodeIds) {
-                if (Node.class.isAssignableFrom(nodeId.getTargetType())) {
-                    final var invNodeId = (InstanceIdentifier<Node>) nodeId;
-                    if (invNodeId.firstKeyOf(Node.class).getId().getValue().contains("openflow:")) {
-                        addInitialFlows(invNodeId);
-                    }
+    /**
+     * Adds a flow, which drops all packets, on the specifide node.
+     * @param nodeId The node to install the flow on.
+     * @param attempt The number of this attempt, starting with 1.
+     */
+    private void addInitialFlows(final InstanceIdentifier<Node> nodeId, final int attempt) {
+        LOG.debug("adding initial flows for node {} ", nodeId);
+
+        final var tableId = getTableInstanceId(nodeId);
+        final var flowId = getFlowInstanceId(tableId);
+
+        // add drop all flow
+        final ListenableFuture<RpcResult<AddFlowOutput>> result;
+        try {
+            result = writeFlowToController(nodeId, tableId, flowId, createDropAllFlow(flowTableId, flowPriority));
+        } catch (RuntimeException e) {
+            LOG.debug("Failed to add initial flows for node {}", nodeId, e);
+            initialFlowsDone(nodeId, attempt, false);
+            return;
+        }
+        Futures.addCallback(result, new FutureCallback<RpcResult<AddFlowOutput>>() {
+            @Override
+            public void onSuccess(final RpcResult<AddFlowOutput> rpcResult) {
+                if (rpcResult.isSuccessful()) {
+                    LOG.debug("Added initial flows for node {} ", nodeId);
+                    initialFlowsDone(nodeId, attempt, true);
+                } else {
+                    LOG.debug("Failed to add initial flows for node {}: {}", nodeId, rpcResult.getErrors());
+                    initialFlowsDone(nodeId, attempt, false);
                 }
             }
-        }
 
-        /**
-         * Adds a flow, which drops all packets, on the specifide node.
-         * @param nodeId The node to install the flow on.
-         */
-        public void addInitialFlows(final InstanceIdentifier<Node> nodeId) {
-            LOG.debug("adding initial flows for node {} ", nodeId);
+            @Override
+            public void onFailure(final Throwable failure) {
+                LOG.debug("Failed to add initial flows for node {}", nodeId, failure);
+                initialFlowsDone(nodeId, attempt, false);
+            }
+        }, MoreExecutors.directExecutor());
+    }
 
-            final var tableId = getTableInstanceId(nodeId);
-            final var flowId = getFlowInstanceId(tableId);
+    private void initialFlowsDone(final InstanceIdentifier<Node> nodeId, final int attempt, final boolean success) {
+        requestCompleted();
+        if (initialFlowExecutor.isShutdown()) {
+            return;
+        }
+        if (!success) {
+            if (attempt < MAX_ATTEMPTS) {
+                initialFlowExecutor.schedule(() -> {
+                    enqueue(nodeId, attempt + 1);
+                    addPendingInitialFlows();
+                }, RETRY_DELAY_MILLIS * attempt, TimeUnit.MILLISECONDS);
+            } else {
+                LOG.warn("Giving up adding initial flows for node {} after {} attempts", nodeId, attempt);
+            }
+        }
+        initialFlowExecutor.execute(this::addPendingInitialFlows);
+    }
 
-            // add drop all flow
-            writeFlowToController(nodeId, tableId, flowId, createDropAllFlow(flowTableId, flowPriority));
+    private InstanceIdentifier<Table> getTableInstanceId(final InstanceIdentifier<Node> nodeId) {
+        return nodeId.builder()
+            .augmentation(FlowCapableNode.class)
+            // get flow table key
+            .child(Table.class, new TableKey(flowTableId))
+            .build();
+    }
 
-            LOG.debug("Added initial flows for node {} ", nodeId);
-        }
+    private InstanceIdentifier<Flow> getFlowInstanceId(final InstanceIdentifier<Table> tableId) {
+        return tableId.child(Flow.class,
+            // generate unique flow key
+            new FlowKey(new FlowId(FLOW_ID_PREFIX + String.valueOf(flowIdInc.getAndIncrement()))));
+    }
 
-        private InstanceIdentifier<Table> getTableInstanceId(final InstanceIdentifier<Node> nodeId) {
-            return nodeId.builder()
-                .augmentation(FlowCapableNode.class)
-                // get flow table key
-                .child(Table.class, new TableKey(flowTableId))
-                .build();
-        }
+    private Flow createDropAllFlow(final Uint8 tableId, final Uint16 priority) {
 
-        private InstanceIdentifier<Flow> getFlowInstanceId(final InstanceIdentifier<Table> tableId) {
-            return tableId.child(Flow.class,
-                // generate unique flow key
-                new FlowKey(new FlowId(FLOW_ID_PREFIX + String.valueOf(flowIdInc.getAndIncrement()))));
-        }
+        // start building flow
+        final var dropAll = new FlowBuilder()
+            .setTableId(tableId)
+            .setFlowName("dropall");
 
-        private Flow createDropAllFlow(final Uint8 tableId, final Uint16 priority) {
-
-            // start building flow
-            final var dropAll = new FlowBuilder()
-                .setTableId(tableId)
-                .setFlowName("dropall");
-
-            return dropAll
-                // use its own hash code for id.
-                .setId(new FlowId(Long.toString(dropAll.hashCode())))
-                .setMatch(new MatchBuilder().build())
-                // Put our Instruction in a list of Instructions
-                .setInstructions(new InstructionsBuilder()
-                    // Wrap our Apply Action in an Instruction
-                    .setInstruction(BindingMap.of(new InstructionBuilder()
-                        .setOrder(0)
-                        .setInstruction(new ApplyActionsCaseBuilder()
-                            // Create an Apply Action
-                            .setApplyActions(new ApplyActionsBuilder().setAction(BindingMap.of(new ActionBuilder()
-                                .setOrder(0)
-                                .setAction(new DropActionCaseBuilder().build())
-                                .build()))
-                                .build())
+        return dropAll
+            // use its own hash code for id.
+            .setId(new FlowId(Long.toString(dropAll.hashCode())))
+            .setMatch(new MatchBuilder().build())
+            // Put our Instruction in a list of Instructions
+            .setInstructions(new InstructionsBuilder()
+                // Wrap our Apply Action in an Instruction
+                .setInstruction(BindingMap.of(new InstructionBuilder()
+                    .setOrder(0)
+                    .setInstruction(new ApplyActionsCaseBuilder()
+                        // Create an Apply Action
+                        .setApplyActions(new ApplyActionsBuilder().setAction(BindingMap.of(new ActionBuilder()
+                            .setOrder(0)
+                            .setAction(new DropActionCaseBuilder().build())
+                            .build()))
                             .build())
-                        .build()))
-                    .build())
-                .setPriority(priority)
-                .setBufferId(OFConstants.OFP_NO_BUFFER)
-                .setHardTimeout(flowHardTimeout)
-                .setIdleTimeout(flowIdleTimeout)
-                .setCookie(new FlowCookie(Uint64.valueOf(flowCookieInc.getAndIncrement())))
-                .setFlags(new FlowModFlags(false, false, false, false, false))
-                .build();
-        }
+                        .build())
+                    .build()))
+                .build())
+            .setPriority(priority)
+            .setBufferId(OFConstants.OFP_NO_BUFFER)
+            .setHardTimeout(flowHardTimeout)
+            .setIdleTimeout(flowIdleTimeout)
+            .setCookie(new FlowCookie(Uint64.valueOf(flowCookieInc.getAndIncrement())))
+            .setFlags(new FlowModFlags(false, false, false, false, false))
+            .build();
+    }
 
-        private ListenableFuture<RpcResult<AddFlowOutput>> writeFlowToController(
-                final InstanceIdentifier<Node> nodeInstanceId, final InstanceIdentifier<Table> tableInstanceId,
-                final InstanceIdentifier<Flow> flowPath, final Flow flow) {
-            LOG.trace("Adding flow to node {}", nodeInstanceId.firstKeyOf(Node.class).getId().getValue());
-            return addFlow.invoke(new AddFlowInputBuilder(flow)
-                .setNode(new NodeRef(nodeInstanceId.toIdentifier()))
-                .setFlowRef(new FlowRef(flowPath.toIdentifier()))
-                .setFlowTable(new FlowTableRef(tableInstanceId.toIdentifier()))
-                .setTransactionUri(new Uri(flow.getId().getValue()))
-                .build());
-        }
+    private ListenableFuture<RpcResult<AddFlowOutput>> writeFlowToController(
+            final InstanceIdentifier<Node> nodeInstanceId, final InstanceIdentifier<Table> tableInstanceId,
+            final InstanceIdentifier<Flow> flowPath, final Flow flow) {
+        LOG.trace("Adding flow to node {}", nodeInstanceId.firstKeyOf(Node.class).getId().getValue());
+        return addFlow.invoke(new AddFlowInputBuilder(flow)
+            .setNode(new NodeRef(nodeInstanceId.toIdentifier()))
+            .setFlowRef(new FlowRef(flowPath.toIdentifier()))
+            .setFlowTable(new FlowTableRef(tableInstanceId.toIdentifier()))
+            .setTransactionUri(new Uri(flow.getId().getValue()))
+            .build());
     }
 }
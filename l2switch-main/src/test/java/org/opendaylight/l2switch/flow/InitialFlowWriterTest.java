@@ -8,11 +8,18 @@
 package org.opendaylight.l2switch.flow;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayList;
 import java.util.List;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -23,11 +30,14 @@ import org.opendaylight.mdsal.binding.api.DataObjectWritten;
 import org.opendaylight.mdsal.binding.api.DataTreeModification;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlow;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowInput;
+import org.opendaylight.yang.gen.v1.urn.opendaylight.flow.service.rev130819.AddFlowOutput;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.NodeId;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
 import org.opendaylight.yangtools.binding.DataObjectIdentifier;
+import org.opendaylight.yangtools.yang.common.RpcResult;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 
 @ExtendWith(MockitoExtension.class)
 class InitialFlowWriterTest {
@@ -44,6 +54,11 @@ class InitialFlowWriterTest {
         initialFlowWriter = new InitialFlowWriter(addFlow);
     }
 
+    @AfterEach
+    void afterEach() {
+        initialFlowWriter.close();
+    }
+
     @Test
     void onDataChange_Valid() throws Exception {
         var instanceId = DataObjectIdentifier.builder(Nodes.class)
@@ -52,8 +67,57 @@ class InitialFlowWriterTest {
         when(mockModification.modificationType()).thenReturn(ModificationType.WRITE);
         when(mockChange.path()).thenReturn(instanceId);
         when(mockChange.getRootNode()).thenReturn(mockModification);
+        doReturn(RpcResultBuilder.success().buildFuture()).when(addFlow).invoke(any(AddFlowInput.class));
 
         initialFlowWriter.onDataTreeChanged(List.of(mockChange));
         verify(addFlow, timeout(250)).invoke(any(AddFlowInput.class));
     }
+
+    @Test
+    void onDataChange_Retried() throws Exception {
+        doReturn(RpcResultBuilder.failed().buildFuture(), RpcResultBuilder.success().buildFuture())
+            .when(addFlow).invoke(any(AddFlowInput.class));
+
+        initialFlowWriter.onDataTreeChanged(List.of(nodeAdded("openflow:1")));
+        verify(addFlow, timeout(2500).times(2)).invoke(any(AddFlowInput.class));
+        verify(addFlow, after(250).times(2)).invoke(any(AddFlowInput.class));
+    }
+
+    @Test
+    void onDataChange_RetriedAfterException() throws Exception {
+        doThrow(new IllegalStateException("RPC not available")).doReturn(RpcResultBuilder.success().buildFuture())
+            .when(addFlow).invoke(any(AddFlowInput.class));
+
+        initialFlowWriter.onDataTreeChanged(List.of(nodeAdded("openflow:1")));
+        verify(addFlow, timeout(2500).times(2)).invoke(any(AddFlowInput.class));
+    }
+
+    @Test
+    void onDataChange_InFlightLimit() throws Exception {
+        final var result = SettableFuture.<RpcResult<AddFlowOutput>>create();
+        doReturn(result).when(addFlow).invoke(any(AddFlowInput.class));
+
+        final var changes = new ArrayList<DataTreeModification<Node>>();
+        for (int i = 1; i <= 20; i++) {
+            changes.add(nodeAdded("openflow:" + i));
+        }
+        initialFlowWriter.onDataTreeChanged(changes);
+        verify(addFlow, after(250).times(16)).invoke(any(AddFlowInput.class));
+
+        // Completing the outstanding requests lets the remaining nodes through
+        result.set(RpcResultBuilder.<AddFlowOutput>success().build());
+        verify(addFlow, timeout(250).times(20)).invoke(any(AddFlowInput.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DataTreeModification<Node> nodeAdded(final String nodeId) {
+        final DataObjectWritten<Node> modification = mock(DataObjectWritten.class);
+        when(modification.modificationType()).thenReturn(ModificationType.WRITE);
+        final DataTreeModification<Node> change = mock(DataTreeModification.class);
+        when(change.path()).thenReturn(DataObjectIdentifier.builder(Nodes.class)
+            .child(Node.class, new NodeKey(new NodeId(nodeId)))
+            .build());
+        when(change.getRootNode()).thenReturn(modification);
+        return change;
+    }
 }
@@ -24,6 +24,7 @@ public final class LoopRemoverProvider implements AutoCloseable {
 
     private Registration listenerRegistration;
     private Registration topoNodeListnerReg;
+    private InitialFlowWriter initialFlowWriter;
 
     // FIXME: an @Activate constructor which deals with dynamic config
     public LoopRemoverProvider(final DataBroker dataBroker, final RpcService rpcService,
@@ -31,7 +32,7 @@ public final class LoopRemoverProvider implements AutoCloseable {
         // Write initial flows
         if (config.getIsInstallLldpFlow()) {
             LOG.info("LoopRemover will install an lldp flow");
-            var initialFlowWriter = new InitialFlowWriter(rpcService.getRpc(AddFlow.class));
+            initialFlowWriter = new InitialFlowWriter(rpcService.getRpc(AddFlow.class));
             initialFlowWriter.setFlowTableId(config.getLldpFlowTableId());
             initialFlowWriter.setFlowPriority(config.getLldpFlowPriority());
             initialFlowWriter.setFlowIdleTimeout(config.getLldpFlowIdleTimeout());
@@ -58,6 +59,10 @@ public final class LoopRemoverProvider implements AutoCloseable {
             topoNodeListnerReg.close();
             topoNodeListnerReg = null;
         }
+        if (initialFlowWriter != null) {
+            initialFlowWriter.close();
+            initialFlowWriter = null;
+        }
         LOG.info("LoopRemover (instance {}) torn down.", this);
     }
 }
@@ -9,12 +9,18 @@ package org.opendaylight.l2switch.loopremover.flow;
 
 import static java.util.Objects.requireNonNull;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import org.opendaylight.mdsal.binding.api.DataBroker;
 import org.opendaylight.mdsal.binding.api.DataObjectModification;
@@ -73,14 +79,23 @@ import org.slf4j.LoggerFactory;
  * Adds a flow, which sends all LLDP packets to the controller, on all switches.
  * Registers as ODL Inventory listener so that it can add flows once a new node i.e. switch is added.
  */
-public class InitialFlowWriter implements DataTreeChangeListener<Node> {
+public class InitialFlowWriter implements DataTreeChangeListener<Node>, AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(InitialFlowWriter.class);
 
     private static final String FLOW_ID_PREFIX = "L2switch-";
     private static final Uint32 LLDP_ETHER_TYPE = Uint32.valueOf(35020);
 
-    private final ExecutorService initialFlowExecutor = Executors.newCachedThreadPool();
+    // AddFlow requests outstanding at any time, and attempts made for each node
+    private static final int MAX_IN_FLIGHT = 16;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    // Releases the thread delivering data tree changes, flows are programmed asynchronously from here
+    private final ScheduledExecutorService initialFlowExecutor = Executors.newScheduledThreadPool(1);
+    // Nodes waiting for their initial flows, in arrival order, with the attempt to be made next
+    private final Map<InstanceIdentifier<Node>, Integer> pendingNodes = new LinkedHashMap<>();
     private final AddFlow addFlow;
+    private int inFlight;
     private Uint8 flowTableId = Uint8.ZERO;
     private Uint16 flowPriority = Uint16.ZERO;
     private Uint16 flowIdleTimeout = Uint16.ZERO;
@@ -139,15 +154,48 @@ public class InitialFlowWriter implements DataTreeChangeListener<Node> {
         }
     }
 
+    @Override
+    public void close() {
+        initialFlowExecutor.shutdownNow();
+    }
+
+    private synchronized void enqueue(final InstanceIdentifier<Node> nodeId, final int attempt) {
+        pendingNodes.putIfAbsent(nodeId, attempt);
+    }
+
+    /**
+     * Picks the next node to program, unless too many requests are outstanding already.
+     */
+    private synchronized Map.Entry<InstanceIdentifier<Node>, Integer> nextPendingNode() {
+        if (inFlight >= MAX_IN_FLIGHT || pendingNodes.isEmpty()) {
+            return null;
+        }
+        var it = pendingNodes.entrySet().iterator();
+        var next = it.next();
+        it.remove();
+        inFlight++;
+        return next;
+    }
+
+    private synchronized void requestCompleted() {
+        inFlight--;
+    }
+
     /**
      * A private class to process the node updated event in separate thread. Allows to release the
      * thread that invoked the data node updated event. Avoids any thread lock it may cause.
      */
     private class InitialFlowWriterProcessor implements Runnable {
         private final Set<InstanceIdentifier<?>> nodeIds;
+        private final int attempt;
 
         InitialFlowWriterProcessor(final Set<InstanceIdentifier<?>> nodeIds) {
+            this(nodeIds, 1);
+        }
+
+        InitialFlowWriterProcessor(final Set<InstanceIdentifier<?>> nodeIds, final int attempt) {
             this.nodeIds = nodeIds;
+            this.attempt = attempt;
         }
 
         @Override
@@ -161,27 +209,73 @@ public class InitialFlowWriter implements DataTreeChangeListener<Node> {
                 if (Node.class.isAssignableFrom(nodeId.getTargetType())) {
                     InstanceIdentifier<Node> topoNodeId = (InstanceIdentifier<Node>)nodeId;
                     if (topoNodeId.firstKeyOf(Node.class).getId().getValue().contains("openflow:")) {
-                        addInitialFlows(topoNodeId);
+                        enqueue(topoNodeId, attempt);
                     }
                 }
             }
 
+            for (var next = nextPendingNode(); next != null; next = nextPendingNode()) {
+                addInitialFlows(next.getKey(), next.getValue());
+            }
         }
 
         /**
          * Adds a flow, which sends all LLDP packets to the controller, to the specified node.
          * @param nodeId The node to write the flow on.
+         * @param nodeAttempt The number of this attempt, starting with 1.
          */
-        public void addInitialFlows(final InstanceIdentifier<Node> nodeId) {
+        public void addInitialFlows(final InstanceIdentifier<Node> nodeId, final int nodeAttempt) {
             LOG.debug("adding initial flows for node {} ", nodeId);
 
             InstanceIdentifier<Table> tableId = getTableInstanceId(nodeId);
             InstanceIdentifier<Flow> flowId = getFlowInstanceId(tableId);
 
             //add lldpToController flow
-            writeFlowToController(nodeId, tableId, flowId, createLldpToControllerFlow(flowTableId, flowPriority));
+            final ListenableFuture<RpcResult<AddFlowOutput>> result;
+            try {
+                result = writeFlowToController(nodeId, tableId, flowId,
+                    createLldpToControllerFlow(flowTableId, flowPriority));
+            } catch (RuntimeException e) {
+                LOG.debug("Failed to add initial flows for node {}", nodeId, e);
+                initialFlowsDone(nodeId, nodeAttempt, false);
+                return;
+            }
+            Futures.addCallback(result, new FutureCallback<RpcResult<AddFlowOutput>>() {
+                @Override
+                public void onSuccess(final RpcResult<AddFlowOutput> rpcResult) {
+                    if (rpcResult.isSuccessful()) {
+                        LOG.debug("Added initial flows for node {} ", nodeId);
+                        initialFlowsDone(nodeId, nodeAttempt, true);
+                    } else {
+                        LOG.debug("Failed to add initial flows for node {}: {}", nodeId, rpcResult.getErrors());
+                        initialFlowsDone(nodeId, nodeAttempt, false);
+                    }
+                }
 
-            LOG.debug("Added initial flows for node {} ", nodeId);
+                @Override
+                public void onFailure(final Throwable failure) {
+                    LOG.debug("Failed to add initial flows for node {}", nodeId, failure);
+                    initialFlowsDone(nodeId, nodeAttempt, false);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        private void initialFlowsDone(final InstanceIdentifier<Node> nodeId, final int nodeAttempt,
+                final boolean success) {
+            requestCompleted();
+            if (initialFlowExecutor.isShutdown()) {
+                return;
+            }
+            if (!success) {
+                if (nodeAttempt < MAX_ATTEMPTS) {
+                    initialFlowExecutor.schedule(new InitialFlowWriterProcessor(Set.of(nodeId), nodeAttempt + 1),
+                        RETRY_DELAY_MILLIS * nodeAttempt, TimeUnit.MILLISECONDS);
+                } else {
+                    LOG.warn("Giving up adding initial flows for node {} after {} attempts", nodeId, nodeAttempt);
+                }
+            }
+            // A slot is free again, let the next pending node through
+            initialFlowExecutor.execute(new InitialFlowWriterProcessor(Set.of()));
         }
 
         private InstanceIdentifier<Table> getTableInstanceId(final InstanceIdentifier<Node> nodeId) {
@@ -259,10 +353,9 @@ public class InitialFlowWriter implements DataTreeChangeListener<Node> {
                     .build();
         }
 
-        private Future<RpcResult<AddFlowOutput>> writeFlowToController(final InstanceIdentifier<Node> nodeInstanceId,
-                                                                       final InstanceIdentifier<Table> tableInstanceId,
-                                                                       final InstanceIdentifier<Flow> flowPath,
-                                                                       final Flow flow) {
+        private ListenableFuture<RpcResult<AddFlowOutput>> writeFlowToController(
+                final InstanceIdentifier<Node> nodeInstanceId, final InstanceIdentifier<Table> tableInstanceId,
+                final InstanceIdentifier<Flow> flowPath, final Flow flow) {
             LOG.trace("Adding flow to node {}",
                     requireNonNull(nodeInstanceId.firstKeyOf(Node.class)).getId().getValue());
             return addFlow.invoke(new AddFlowInputBuilder(flow)
@@ -8,6 +8,7 @@
 package org.opendaylight.l2switch.loopremover.flow;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -29,6 +30,7 @@ import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.Nodes;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.Node;
 import org.opendaylight.yang.gen.v1.urn.opendaylight.inventory.rev130819.nodes.NodeKey;
 import org.opendaylight.yangtools.yang.binding.InstanceIdentifier;
+import org.opendaylight.yangtools.yang.common.RpcResultBuilder;
 
 @ExtendWith(MockitoExtension.class)
 class InitialFlowWriterTest {
@@ -57,6 +59,8 @@ class InitialFlowWriterTest {
                 instanceId));
         when(mockChange.getRootNode()).thenReturn(mockModification);
 
+        doReturn(RpcResultBuilder.success().buildFuture()).when(addFlow).invoke(any());
+
         initialFlowWriter.onDataTreeChanged(List.of(mockChange));
         verify(addFlow, timeout(250)).invoke(any());
     }